@@ -0,0 +1,123 @@
+package GeneticAlgorithms;
+
+import GeneticObjects.Chromosome;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+
+/**
+ * A run of a GeneticAlgorithm on another thread, started by
+ * GeneticAlgorithm.runAsync. The best tour found so far can be read at any
+ * moment, and is a usable answer as soon as the run has started, since the
+ * fittest Chromosome of the initial population is the first best tour.
+ * <br/>
+ * Each time a generation finds a shorter tour, the new best tour is
+ * published to the subscribers. A subscriber only gets the tours found after
+ * it subscribed, and a subscriber that falls behind misses tours rather than
+ * slowing down the run, so getBest() should be used to get the latest one.
+ * <br/>
+ * The GeneticAlgorithm must not be used by anything else until the run is
+ * done, that is until the result is complete.
+ */
+public class AnytimeRun implements Flow.Publisher<Chromosome> {
+
+    private final GeneticAlgorithm geneticAlgorithm;
+    private final SubmissionPublisher<Chromosome> publisher;
+    private final CompletableFuture<Chromosome> result;
+
+    private volatile Chromosome best;
+    private volatile boolean cancelled;
+
+    /**
+     * Construct the run. It does not start until start() is called.
+     * @param geneticAlgorithm  the GeneticAlgorithm to run
+     */
+    AnytimeRun (GeneticAlgorithm geneticAlgorithm) {
+        this.geneticAlgorithm = geneticAlgorithm;
+        publisher = new SubmissionPublisher<>();
+        result = new CompletableFuture<>();
+        best = publish(geneticAlgorithm.getPopulation().getMostFit());
+    }
+
+    /**
+     * Start the generation loop.
+     * @param executor  runs the loop, which takes up its thread until the run is done
+     */
+    void start (Executor executor) {
+        executor.execute(this::run);
+    }
+
+    private void run () {
+        try {
+            geneticAlgorithm.start();
+            while (!isStopping() && !geneticAlgorithm.shouldStop()) {
+                geneticAlgorithm.nextGeneration();
+                geneticAlgorithm.checkpointIfDue();
+
+                Chromosome mostFit = geneticAlgorithm.getPopulation().getMostFit();
+                if (mostFit.getLength() < best.getLength()) {
+                    best = publish(mostFit);
+                    publisher.offer(best, null);
+                }
+            }
+            if (isStopping()) {
+                geneticAlgorithm.setStopReason("Cancelled.");
+            }
+            geneticAlgorithm.finish();
+            publisher.close();
+            result.complete(best);
+        } catch (RuntimeException | Error ex) {
+            publisher.closeExceptionally(ex);
+            result.completeExceptionally(ex);
+        }
+    }
+
+    /**
+     * Fills in the cached values of a Chromosome before other threads can
+     * see it, so they never compute them at the same time.
+     * @param chromosome    the Chromosome about to be published
+     * @return              the same Chromosome
+     */
+    private static Chromosome publish (Chromosome chromosome) {
+        chromosome.getLength();
+        chromosome.getFingerprint();
+        return chromosome;
+    }
+
+    private boolean isStopping () {
+        return cancelled || result.isDone();
+    }
+
+    /**
+     * Get the best tour found so far. Never blocks.
+     * @return  the shortest tour found since the run started
+     */
+    public Chromosome getBest () {
+        return best;
+    }
+
+    /**
+     * Ask the run to stop after the generation it is breeding. The result
+     * then completes with the best tour found, as if the run had ended.
+     */
+    public void cancel () {
+        cancelled = true;
+    }
+
+    /**
+     * Get the result of the run, which completes with the best tour found
+     * once the run stops. Cancelling the future also stops the run.
+     * @return  the future best tour
+     */
+    public CompletableFuture<Chromosome> getResult () {
+        return result;
+    }
+
+    @Override
+    public void subscribe (Flow.Subscriber<? super Chromosome> subscriber) {
+        publisher.subscribe(subscriber);
+    }
+
+}
@@ -0,0 +1,298 @@
+package GeneticAlgorithms;
+
+import GeneticObjects.Chromosome;
+import GeneticObjects.CityTable;
+import GeneticObjects.Population;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Random;
+
+/**
+ * A snapshot of everything a GeneticAlgorithm needs to carry on a run from
+ * where it was: the parameters, the generation, the state of the Random
+ * object, the results so far and the population in its current order.
+ * <br/>
+ * The snapshot is taken on the thread running the GeneticAlgorithm, which
+ * only has to copy references and a few numbers, and can then be written to
+ * disk on another thread. The Chromosomes are immutable, so the population
+ * can be written while the run goes on.
+ * <br/>
+ * The file is a stream of big-endian values. The tours are packed, each city
+ * index taking only as many bits as the largest index needs.
+ */
+class Checkpoint {
+
+    private static final int MAGIC = 0x4741434b; // "GACK"
+    private static final int VERSION = 4;
+
+    // Parameters.
+    int maxGen;
+    int k;
+    int elitismValue;
+    double crossoverRate;
+    double mutationRate;
+    double localSearchRate;
+    boolean forceUniqueness;
+    GeneticAlgorithm.CrossoverType crossoverType;
+    GeneticAlgorithm.MutationType mutationType;
+    GeneticAlgorithm.SelectionType selectionType;
+    int childrenPerStep;
+    GeneticAlgorithm.ReplacementType replacementType;
+
+    // State.
+    int generation;
+    byte[] random;              // The Random object, serialized.
+    Chromosome[] chromosomes;   // The population, in order.
+    int populationSize;         // The maximum size of the population.
+
+    // Results.
+    int averageDistanceOfFirstGeneration;
+    int bestDistanceOfFirstGeneration;
+    History averageDistanceOfEachGeneration;
+    History bestDistanceOfEachGeneration;
+    long areaUnderAverageDistances;
+    long areaUnderBestDistances;
+    int bestDistanceSoFar;
+    int lastImprovement;
+
+    /**
+     * Serializes a Random object, which is the only way to get at its state.
+     * @param random    the Random object
+     * @return          the serialized Random object
+     */
+    static byte[] saveRandom (Random random) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(random);
+        } catch (NotSerializableException ex) {
+            throw new IllegalStateException("The Random object cannot be saved.", ex);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Rebuilds a Random object from saveRandom, in the same state it was in.
+     * @return  the Random object
+     * @throws IOException  if the Random object can not be read
+     */
+    Random loadRandom () throws IOException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(random))) {
+            return (Random)in.readObject();
+        } catch (ClassNotFoundException ex) {
+            throw new IOException("The Random object cannot be loaded.", ex);
+        }
+    }
+
+    /**
+     * Rebuilds the population.
+     * @return  the population, in the order it was saved in
+     */
+    Population loadPopulation () {
+        Population population = new Population(populationSize);
+        for (Chromosome chromosome : chromosomes) {
+            population.add(chromosome);
+        }
+        return population;
+    }
+
+    /**
+     * Writes the checkpoint to a file. It is first written next to the file
+     * and then moved over it, so the last complete checkpoint is never lost
+     * if the program stops while writing.
+     * @param file  the file to write
+     * @throws IOException  if the file can not be written
+     */
+    void write (File file) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+
+            out.writeInt(maxGen);
+            out.writeInt(k);
+            out.writeInt(elitismValue);
+            out.writeDouble(crossoverRate);
+            out.writeDouble(mutationRate);
+            out.writeDouble(localSearchRate);
+            out.writeBoolean(forceUniqueness);
+            out.writeInt(crossoverType.ordinal());
+            out.writeInt(mutationType.ordinal());
+            out.writeInt(selectionType.ordinal());
+            out.writeInt(childrenPerStep);
+            out.writeInt(replacementType.ordinal());
+
+            out.writeInt(generation);
+            out.writeInt(random.length);
+            out.write(random);
+
+            out.writeInt(averageDistanceOfFirstGeneration);
+            out.writeInt(bestDistanceOfFirstGeneration);
+            writeHistory(out, averageDistanceOfEachGeneration);
+            writeHistory(out, bestDistanceOfEachGeneration);
+            out.writeLong(areaUnderAverageDistances);
+            out.writeLong(areaUnderBestDistances);
+            out.writeInt(bestDistanceSoFar);
+            out.writeInt(lastImprovement);
+
+            int cities = chromosomes[0].size();
+            out.writeInt(populationSize);
+            out.writeInt(chromosomes.length);
+            out.writeInt(cities);
+
+            // The exact lengths, since a length found from deltas may not
+            // be bit for bit the same as adding up the edges again.
+            for (Chromosome chromosome : chromosomes) {
+                out.writeDouble(chromosome.getLength());
+            }
+
+            int bits = bitsPerCity(cities);
+            long word = 0;
+            int used = 0;
+            for (Chromosome chromosome : chromosomes) {
+                for (int i = 0; i < cities; i++) {
+                    long city = chromosome.getCityIndex(i);
+                    word |= city << used;
+                    used += bits;
+                    if (used >= 64) {
+                        out.writeLong(word);
+                        used -= 64;
+                        word = (used == 0) ? 0 : city >>> (bits - used);
+                    }
+                }
+            }
+            if (used > 0) {
+                out.writeLong(word);
+            }
+        }
+
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads a checkpoint written by write.
+     * @param file      the file to read
+     * @param table     the cities the tours of the checkpoint go through
+     * @return          the checkpoint
+     * @throws IOException  if the file can not be read
+     */
+    static Checkpoint read (File file, CityTable table) throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+
+            if (in.readInt() != MAGIC) {
+                throw new IllegalArgumentException("The file is not a checkpoint.");
+            }
+            int version = in.readInt();
+            if (version < 2 || version > VERSION) {
+                throw new IllegalArgumentException("Unsupported version " + version + ".");
+            }
+
+            Checkpoint checkpoint = new Checkpoint();
+            checkpoint.maxGen = in.readInt();
+            checkpoint.k = in.readInt();
+            checkpoint.elitismValue = in.readInt();
+            checkpoint.crossoverRate = in.readDouble();
+            checkpoint.mutationRate = in.readDouble();
+            checkpoint.localSearchRate = in.readDouble();
+            checkpoint.forceUniqueness = in.readBoolean();
+            checkpoint.crossoverType = GeneticAlgorithm.CrossoverType.values()[in.readInt()];
+            checkpoint.mutationType = GeneticAlgorithm.MutationType.values()[in.readInt()];
+            // Older versions lack the parameters added since, which had these values.
+            checkpoint.selectionType = (version < 3) ? GeneticAlgorithm.SelectionType.TOURNAMENT
+                    : GeneticAlgorithm.SelectionType.values()[in.readInt()];
+            checkpoint.childrenPerStep = (version < 4) ? 0 : in.readInt();
+            checkpoint.replacementType = (version < 4) ? GeneticAlgorithm.ReplacementType.WORST
+                    : GeneticAlgorithm.ReplacementType.values()[in.readInt()];
+
+            checkpoint.generation = in.readInt();
+            checkpoint.random = new byte[in.readInt()];
+            in.readFully(checkpoint.random);
+
+            checkpoint.averageDistanceOfFirstGeneration = in.readInt();
+            checkpoint.bestDistanceOfFirstGeneration = in.readInt();
+            checkpoint.averageDistanceOfEachGeneration = readHistory(in);
+            checkpoint.bestDistanceOfEachGeneration = readHistory(in);
+            checkpoint.areaUnderAverageDistances = in.readLong();
+            checkpoint.areaUnderBestDistances = in.readLong();
+            checkpoint.bestDistanceSoFar = in.readInt();
+            checkpoint.lastImprovement = in.readInt();
+
+            checkpoint.populationSize = in.readInt();
+            int size = in.readInt();
+            int cities = in.readInt();
+            if (cities != table.size()) {
+                throw new IllegalArgumentException("The checkpoint is of " + cities +
+                        " cities, not " + table.size() + ".");
+            }
+
+            double[] lengths = new double[size];
+            for (int i = 0; i < size; i++) {
+                lengths[i] = in.readDouble();
+            }
+
+            int bits = bitsPerCity(cities);
+            long mask = (1L << bits) - 1;
+            long word = 0;
+            int available = 0;
+            checkpoint.chromosomes = new Chromosome[size];
+            for (int c = 0; c < size; c++) {
+                int[] tour = new int[cities];
+                for (int i = 0; i < cities; i++) {
+                    long city;
+                    if (available >= bits) {
+                        city = word & mask;
+                        word >>>= bits;
+                        available -= bits;
+                    } else {
+                        // The index continues in the next word.
+                        long next = in.readLong();
+                        city = (word | (next << available)) & mask;
+                        int taken = bits - available;
+                        word = next >>> taken;
+                        available = 64 - taken;
+                    }
+                    tour[i] = (int)city;
+                }
+                checkpoint.chromosomes[c] = new Chromosome(table, tour, lengths[c]);
+            }
+
+            return checkpoint;
+        }
+    }
+
+    private static void writeHistory (DataOutputStream out, History history) throws IOException {
+        out.writeInt(history.getCapacity());
+        out.writeInt(history.getStride());
+        out.writeLong(history.getTotal());
+        out.writeInt(history.size());
+        for (int i = 0; i < history.size(); i++) {
+            out.writeInt(history.get(i));
+        }
+    }
+
+    private static History readHistory (DataInputStream in) throws IOException {
+        int capacity = in.readInt();
+        int stride = in.readInt();
+        long total = in.readLong();
+        int[] values = new int[in.readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readInt();
+        }
+        return History.restore(capacity, stride, total, values);
+    }
+
+    /**
+     * Get the number of bits needed for the largest city index.
+     */
+    private static int bitsPerCity (int cities) {
+        return Math.max(1, 32 - Integer.numberOfLeadingZeros(cities - 1));
+    }
+
+}
@@ -1,10 +1,13 @@
 package GeneticAlgorithms;
 
 import GeneticObjects.Chromosome;
-import GeneticObjects.City;
+import GeneticObjects.CityTable;
 import GeneticObjects.Population;
+import GeneticObjects.TourPool;
 
-import java.util.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
 
 /**
  * Used for Chromosome reproduction.
@@ -17,6 +20,13 @@ class Crossover {
      */
     private Crossover () {}
 
+    // Marks a position of a child tour that no city has been placed in yet.
+    private static final int EMPTY = -1;
+
+    // The working arrays of the crossovers, one set per thread. The tours of
+    // the children come from the TourPool.
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
     /**
      * Uses a bit mask to perform a uniform order crossover.
      * @param p1    the first parent Chromosome
@@ -26,86 +36,80 @@ class Crossover {
      */
     static ArrayList<Chromosome> uniformOrder (Chromosome p1, Chromosome p2, Random r) {
 
-        City[] parent1 = p1.getArray();
-        City[] parent2 = p2.getArray();
-
-        City[] child1 = new City[parent1.length];
-        City[] child2 = new City[parent2.length];
-
-        HashSet<City> citiesInChild1 = new HashSet<>();
-        HashSet<City> citiesInChild2 = new HashSet<>();
+        int totalCities = p1.size();
+        Scratch scratch = SCRATCH.get().reset(totalCities);
 
-        ArrayList<City> citiesNotInChild1 = new ArrayList<>();
-        ArrayList<City> citiesNotInChild2 = new ArrayList<>();
-
-        ArrayList<Chromosome> children = new ArrayList<>();
-
-        int[] bitMask = generateBitMask(parent1.length, r);
+        int[] child1 = emptyTour(totalCities);
+        int[] child2 = emptyTour(totalCities);
 
         // Inherit the cities of the same parent where the bit-mask is 1.
         // Example: child 1 has all the same cities as parent 1 at the indexes where the bit-mask is 1.
-        for (int i = 0; i < bitMask.length; i++) {
-            if (bitMask[i] == 1) {
-                child1[i] = parent1[i];
-                child2[i] = parent2[i];
-                citiesInChild1.add(parent1[i]);
-                citiesInChild2.add(parent2[i]);
+        for (int i = 0; i < totalCities; i++) {
+            if (r.nextInt(2) == 1) {
+                child1[i] = p1.getCityIndex(i);
+                child2[i] = p2.getCityIndex(i);
+                scratch.inChild1.set(p1.getCityIndex(i));
+                scratch.inChild2.set(p2.getCityIndex(i));
             }
         }
 
         // Get the cities of the opposite parent if the child does not already contain them.
-        for (int i = 0; i < child1.length; i++) {
-            if (child1[i] == null && !citiesInChild1.contains(parent2[i])) {
-                child1[i] = parent2[i];
-                citiesInChild1.add(parent2[i]);
-            } else if (child1[i] != null && !citiesInChild1.contains(parent2[i])) {
-                citiesNotInChild1.add(parent2[i]);
+        int missing1 = 0, missing2 = 0;
+        for (int i = 0; i < totalCities; i++) {
+            int city1 = p2.getCityIndex(i);
+            if (!scratch.inChild1.get(city1)) {
+                if (child1[i] == EMPTY) {
+                    child1[i] = city1;
+                    scratch.inChild1.set(city1);
+                } else {
+                    scratch.missing1[missing1++] = city1;
+                }
             }
-            if (child2[i] == null && !citiesInChild2.contains(parent1[i])) {
-                child2[i] = parent1[i];
-                citiesInChild2.add(parent1[i]);
-            } else if (child2[i] != null && !citiesInChild2.contains(parent1[i])) {
-                citiesNotInChild2.add(parent1[i]);
+            int city2 = p1.getCityIndex(i);
+            if (!scratch.inChild2.get(city2)) {
+                if (child2[i] == EMPTY) {
+                    child2[i] = city2;
+                    scratch.inChild2.set(city2);
+                } else {
+                    scratch.missing2[missing2++] = city2;
+                }
             }
         }
 
         // Fill in the blanks.
-        for (int i = 0; i < child1.length; i++) {
-            if (child1[i] == null) {
-                child1[i] = citiesNotInChild1.remove(0);
+        int next1 = 0, next2 = 0;
+        for (int i = 0; i < totalCities; i++) {
+            if (child1[i] == EMPTY) {
+                child1[i] = scratch.missing1[next1++];
             }
-            if (child2[i] == null) {
-                child2[i] = citiesNotInChild2.remove(0);
+            if (child2[i] == EMPTY) {
+                child2[i] = scratch.missing2[next2++];
             }
         }
 
-        if (!citiesNotInChild1.isEmpty() || !citiesNotInChild2.isEmpty()) {
-            throw new AssertionError("Lists should be empty.");
+        if (next1 != missing1 || next2 != missing2) {
+            throw new AssertionError("All the missing cities should be placed.");
         }
 
-        Chromosome childOne = new Chromosome(child1);
-        Chromosome childTwo = new Chromosome(child2);
-        children.add(childOne);
-        children.add(childTwo);
-
-        return children;
+        return children(p1.getCityTable(), child1, child2);
     }
 
     /**
-     * Generate an array of a specified sizes with randomly placed ones and zeroes.
-     * @param size      the size of the array
-     * @param random    the Random object used for generating the random ones and zeroes
-     * @return          an array with randomly places ones and zeroes
+     * Create a tour of a specified size where no city has been placed yet.
+     * @param size      the number of cities in the tour
+     * @return          an array filled with EMPTY
      */
-    private static int[] generateBitMask (int size, Random random) {
-
-        int[] array = new int[size];
-
-        for (int i = 0; i < array.length; i++) {
-            array[i] = (random.nextInt(2) == 0) ? 0 : 1;
-        }
+    private static int[] emptyTour (int size) {
+        int[] tour = TourPool.take(size);
+        Arrays.fill(tour, EMPTY);
+        return tour;
+    }
 
-        return array;
+    private static ArrayList<Chromosome> children (CityTable table, int[] child1, int[] child2) {
+        ArrayList<Chromosome> children = new ArrayList<>(2);
+        children.add(new Chromosome(table, child1));
+        children.add(new Chromosome(table, child2));
+        return children;
     }
 
     /**
@@ -116,175 +120,429 @@ class Crossover {
      * @return      the children
      */
     static ArrayList<Chromosome> onePointCrossover (Chromosome p1, Chromosome p2, Random r) {
-        City[] parent1 = p1.getArray();
-        City[] parent2 = p2.getArray();
-
-        City[] child1 = new City[parent1.length];
-        City[] child2 = new City[parent2.length];
-
-        HashSet<City> citiesInChild1 = new HashSet<>();
-        HashSet<City> citiesInChild2 = new HashSet<>();
+        int totalCities = p1.size();
+        int randomPoint = r.nextInt(totalCities);
+        return keepOutside(p1, p2, randomPoint, totalCities);
+    }
 
-        ArrayList<City> citiesNotInChild1 = new ArrayList<>();
-        ArrayList<City> citiesNotInChild2 = new ArrayList<>();
+    /**
+     * Performs a crossover on all the cities between two points.
+     * @param p1    the first parent chromosome
+     * @param p2    the second parent chromosome
+     * @param r     the Random object for selecting a point
+     * @return      the children
+     */
+    static ArrayList<Chromosome> orderCrossover (Chromosome p1, Chromosome p2, Random r) {
+        int totalCities = p1.size();
+        int firstPoint = r.nextInt(totalCities);
+        int secondPoint = r.nextInt(totalCities - firstPoint) + firstPoint;
+        return keepOutside(p1, p2, firstPoint, secondPoint);
+    }
 
-        ArrayList<Chromosome> children = new ArrayList<>();
-        int totalCities = parent1.length;
+    /**
+     * Each child inherits the cities of its own parent outside of a range,
+     * takes the cities of the other parent in the range where they are not
+     * already in the child, and the empty positions left are filled with
+     * the missing cities in the order of the other parent.
+     * @param p1        the first parent chromosome
+     * @param p2        the second parent chromosome
+     * @param from      the first position of the range
+     * @param to        the position after the range
+     * @return          the children
+     */
+    private static ArrayList<Chromosome> keepOutside (Chromosome p1, Chromosome p2, int from, int to) {
+        int totalCities = p1.size();
+        Scratch scratch = SCRATCH.get().reset(totalCities);
 
-        int randomPoint = r.nextInt(totalCities);
+        int[] child1 = emptyTour(totalCities);
+        int[] child2 = emptyTour(totalCities);
 
-        // Inherit the cities up to the point.
-        for (int i = 0; i < randomPoint; i++) {
-            child1[i] = parent1[i];
-            child2[i] = parent2[i];
-            citiesInChild1.add(parent1[i]);
-            citiesInChild2.add(parent2[i]);
+        // Inherit the cities before and after the range.
+        for (int i = 0; i < totalCities; i++) {
+            if (i < from || i >= to) {
+                child1[i] = p1.getCityIndex(i);
+                child2[i] = p2.getCityIndex(i);
+                scratch.inChild1.set(p1.getCityIndex(i));
+                scratch.inChild2.set(p2.getCityIndex(i));
+            }
         }
 
         // Get the cities of the opposite parent if the child does not already contain them.
-        for (int i = randomPoint; i < totalCities; i++) {
-            if (!citiesInChild1.contains(parent2[i])) {
-                citiesInChild1.add(parent2[i]);
-                child1[i] = parent2[i];
+        for (int i = from; i < to; i++) {
+            if (!scratch.inChild1.get(p2.getCityIndex(i))) {
+                scratch.inChild1.set(p2.getCityIndex(i));
+                child1[i] = p2.getCityIndex(i);
             }
-            if (!citiesInChild2.contains(parent1[i])) {
-                citiesInChild2.add(parent1[i]);
-                child2[i] = parent1[i];
+            if (!scratch.inChild2.get(p1.getCityIndex(i))) {
+                scratch.inChild2.set(p1.getCityIndex(i));
+                child2[i] = p1.getCityIndex(i);
             }
         }
 
-        // Find all the cities that are still missing from each child.
+        // Fill in the empty spots in order with the cities still missing from
+        // each child, in the order of the other parent.
+        int spot1 = 0, spot2 = 0;
         for (int i = 0; i < totalCities; i++) {
-            if (!citiesInChild1.contains(parent2[i])) {
-                citiesNotInChild1.add(parent2[i]);
+            int city1 = p2.getCityIndex(i);
+            if (!scratch.inChild1.get(city1)) {
+                while (child1[spot1] != EMPTY) spot1++;
+                child1[spot1] = city1;
             }
-            if (!citiesInChild2.contains(parent1[i])) {
-                citiesNotInChild2.add(parent1[i]);
+            int city2 = p1.getCityIndex(i);
+            if (!scratch.inChild2.get(city2)) {
+                while (child2[spot2] != EMPTY) spot2++;
+                child2[spot2] = city2;
             }
         }
 
-        // Find which spots are still empty in each child.
-        ArrayList<Integer> emptySpotsC1 = new ArrayList<>();
-        ArrayList<Integer> emptySpotsC2 = new ArrayList<>();
-        for (int i = 0; i < totalCities; i++) {
-            if (child1[i] == null) {
-                emptySpotsC1.add(i);
-            }
-            if (child2[i] == null) {
-                emptySpotsC2.add(i);
+        return children(p1.getCityTable(), child1, child2);
+    }
+
+    /**
+     * Performs a partially mapped crossover (PMX). Each child inherits the
+     * cities of its own parent between two points, and the cities of the
+     * other parent everywhere else. Where a city of the other parent is
+     * already in the range, the city it was swapped with in the range is
+     * taken instead, following the mapping until a city not in the range is
+     * found. The mapping chains never share a position of the range, so the
+     * whole crossover is O(n).
+     * @param p1    the first parent chromosome
+     * @param p2    the second parent chromosome
+     * @param r     the Random object for selecting the points
+     * @return      the children
+     */
+    static ArrayList<Chromosome> partiallyMapped (Chromosome p1, Chromosome p2, Random r) {
+        int totalCities = p1.size();
+        int firstPoint = r.nextInt(totalCities);
+        int secondPoint = r.nextInt(totalCities - firstPoint) + firstPoint;
+
+        Scratch scratch = SCRATCH.get().reset(totalCities);
+        indexPositions(p1, scratch.position1);
+        indexPositions(p2, scratch.position2);
+
+        return children(p1.getCityTable(),
+                partiallyMapped(p1, p2, scratch.position1, firstPoint, secondPoint),
+                partiallyMapped(p2, p1, scratch.position2, firstPoint, secondPoint));
+    }
+
+    /**
+     * Builds one child of PMX.
+     * @param own           the parent whose range the child inherits
+     * @param other         the parent the rest of the child comes from
+     * @param ownPosition   the position of each city in own
+     * @param from          the first position of the range
+     * @param to            the position after the range
+     * @return              the tour of the child
+     */
+    private static int[] partiallyMapped (Chromosome own, Chromosome other, int[] ownPosition,
+                                          int from, int to) {
+        int[] child = TourPool.take(own.size());
+        for (int i = 0; i < child.length; i++) {
+            if (i >= from && i < to) {
+                child[i] = own.getCityIndex(i);
+            } else {
+                int city = other.getCityIndex(i);
+                int position = ownPosition[city];
+                while (position >= from && position < to) {
+                    city = other.getCityIndex(position);
+                    position = ownPosition[city];
+                }
+                child[i] = city;
             }
         }
+        return child;
+    }
 
-        // Fill in the empty spots.
-        for (City city : citiesNotInChild1) {
-            child1[emptySpotsC1.remove(0)] = city;
-        }
-        for (City city : citiesNotInChild2) {
-            child2[emptySpotsC2.remove(0)] = city;
+    /**
+     * Performs a cycle crossover. The positions of the tours are split into
+     * cycles: starting from a position, the city of the second parent there
+     * is found in the first parent, and so on until the start is reached
+     * again. The first child takes its cities from the first parent in the
+     * first cycle, from the second parent in the second cycle, and so on,
+     * and the second child the other way around. So every city keeps the
+     * position it has in one of the parents. No randomness is needed, and
+     * with an index of the positions of the cities it is O(n).
+     * @param p1    the first parent chromosome
+     * @param p2    the second parent chromosome
+     * @param r     not used, for the same signature as the other crossovers
+     * @return      the children
+     */
+    static ArrayList<Chromosome> cycleCrossover (Chromosome p1, Chromosome p2, Random r) {
+        int totalCities = p1.size();
+        Scratch scratch = SCRATCH.get().reset(totalCities);
+        indexPositions(p1, scratch.position1);
+
+        int[] child1 = TourPool.take(totalCities);
+        int[] child2 = TourPool.take(totalCities);
+        boolean fromFirst = true;
+
+        for (int start = 0; start < totalCities; start++) {
+            if (scratch.inChild1.get(start)) {
+                continue; // The position is in a cycle already done.
+            }
+            int position = start;
+            do {
+                scratch.inChild1.set(position);
+                child1[position] = fromFirst ? p1.getCityIndex(position) : p2.getCityIndex(position);
+                child2[position] = fromFirst ? p2.getCityIndex(position) : p1.getCityIndex(position);
+                position = scratch.position1[p2.getCityIndex(position)];
+            } while (position != start);
+            fromFirst = !fromFirst;
         }
 
-        Chromosome childOne = new Chromosome(child1);
-        Chromosome childTwo = new Chromosome(child2);
-        children.add(childOne);
-        children.add(childTwo);
+        return children(p1.getCityTable(), child1, child2);
+    }
 
-        return children;
+    /**
+     * Fill an index of the position of each city in a tour.
+     * @param tour      the tour
+     * @param position  the array to fill, position[city] is the index of the city in the tour
+     */
+    private static void indexPositions (Chromosome tour, int[] position) {
+        for (int i = 0; i < tour.size(); i++) {
+            position[tour.getCityIndex(i)] = i;
+        }
     }
 
     /**
-     * Performs a crossover on all the cities between two points.
+     * Performs an edge recombination crossover. Unlike the other crossovers,
+     * which keep the positions of cities, this one keeps the edges of the
+     * parents, which is what makes a tour short: each child is built almost
+     * entirely out of edges found in either parent, and an edge found in
+     * both parents is always kept.
+     * <br/>
+     * The edges of both parents are put in an edge table of at most four
+     * neighbors per city. A child starts at a random city and always goes to
+     * a neighbor in the table: one shared by both parents if there is one,
+     * otherwise the one with the fewest neighbors left (so that no city is
+     * left without any), and the nearest one between those that tie. Only
+     * when the current city has no neighbors left does the child jump to a
+     * random city not yet visited. Every step takes constant time, so a
+     * child is built in O(n).
      * @param p1    the first parent chromosome
      * @param p2    the second parent chromosome
-     * @param r     the Random object for selecting a point
+     * @param r     the Random object for the starting cities
      * @return      the children
      */
-    static ArrayList<Chromosome> orderCrossover (Chromosome p1, Chromosome p2, Random r) {
-        City[] parent1 = p1.getArray();
-        City[] parent2 = p2.getArray();
-
-        City[] child1 = new City[parent1.length];
-        City[] child2 = new City[parent2.length];
+    static ArrayList<Chromosome> edgeRecombination (Chromosome p1, Chromosome p2, Random r) {
+        CityTable table = p1.getCityTable();
+        EdgeTable edgeTable = SCRATCH.get().getEdgeTable(p1.size());
 
-        HashSet<City> citiesInChild1 = new HashSet<>();
-        HashSet<City> citiesInChild2 = new HashSet<>();
+        edgeTable.fill(p1, p2);
+        int[] child1 = edgeTable.buildTour(table, r.nextInt(p1.size()), r);
+        edgeTable.fill(p1, p2);
+        int[] child2 = edgeTable.buildTour(table, r.nextInt(p1.size()), r);
 
-        ArrayList<City> citiesNotInChild1 = new ArrayList<>();
-        ArrayList<City> citiesNotInChild2 = new ArrayList<>();
-
-        ArrayList<Chromosome> children = new ArrayList<>();
-        int totalCities = parent1.length;
+        return children(table, child1, child2);
+    }
 
-        int firstPoint = r.nextInt(totalCities);
-        int secondPoint = r.nextInt(totalCities - firstPoint) + firstPoint;
+    /**
+     * The neighbors of each city in two parent tours, for edge recombination.
+     * The neighbors are kept in flat arrays, four slots per city, rather than
+     * in a list or set per city. A neighbor that is a neighbor in both
+     * parents is stored as its bitwise complement, which is negative.
+     */
+    private static class EdgeTable {
+
+        private final int[] neighbors;  // Slots 4*city to 4*city+3 are the neighbors of a city.
+        private final int[] degree;     // The number of neighbors of a city still in the table.
+        private final int[] unvisited;  // The cities not in the child yet, in the first count slots.
+        private final int[] position;   // The index of each city in unvisited.
+        private int count;
+
+        EdgeTable (int size) {
+            neighbors = new int[4 * size];
+            degree = new int[size];
+            unvisited = new int[size];
+            position = new int[size];
+        }
 
-        // Inherit the cities before and after the points selected.
-        for (int i = 0; i < firstPoint; i++) {
-            child1[i] = parent1[i];
-            child2[i] = parent2[i];
-            citiesInChild1.add(parent1[i]);
-            citiesInChild2.add(parent2[i]);
+        int size () {
+            return degree.length;
         }
-        for (int i = secondPoint; i < totalCities; i++) {
-            child1[i] = parent1[i];
-            child2[i] = parent2[i];
-            citiesInChild1.add(parent1[i]);
-            citiesInChild2.add(parent2[i]);
+
+        /**
+         * Fills the table with the edges of two parents.
+         */
+        void fill (Chromosome p1, Chromosome p2) {
+            Arrays.fill(degree, 0);
+            addEdges(p1);
+            addEdges(p2);
+
+            count = unvisited.length;
+            for (int city = 0; city < count; city++) {
+                unvisited[city] = city;
+                position[city] = city;
+            }
         }
 
-        // Get the cities of the opposite parent if the child does not already contain them.
-        for (int i = firstPoint; i < secondPoint; i++) {
-            if (!citiesInChild1.contains(parent2[i])) {
-                citiesInChild1.add(parent2[i]);
-                child1[i] = parent2[i];
+        private void addEdges (Chromosome parent) {
+            int size = parent.size();
+            for (int i = 0; i < size; i++) {
+                int a = parent.getCityIndex(i);
+                int b = parent.getCityIndex((i + 1 == size) ? 0 : i + 1);
+                addNeighbor(a, b);
+                addNeighbor(b, a);
             }
-            if (!citiesInChild2.contains(parent1[i])) {
-                citiesInChild2.add(parent1[i]);
-                child2[i] = parent1[i];
+        }
+
+        private void addNeighbor (int city, int neighbor) {
+            int base = 4 * city;
+            for (int i = 0; i < degree[city]; i++) {
+                if (neighbors[base + i] == neighbor) {
+                    neighbors[base + i] = ~neighbor; // Shared by both parents.
+                    return;
+                }
             }
+            neighbors[base + degree[city]++] = neighbor;
         }
 
-        // Find all the cities that are still missing from each child.
-        for (int i = 0; i < totalCities; i++) {
-            if (!citiesInChild1.contains(parent2[i])) {
-                citiesNotInChild1.add(parent2[i]);
+        /**
+         * Takes a city out of the table, so that no other city leads to it.
+         * The neighbors are symmetric, so only the lists of the neighbors of
+         * the city have to be looked at.
+         */
+        private void visit (int city) {
+            int base = 4 * city;
+            for (int i = 0; i < degree[city]; i++) {
+                int neighbor = decode(neighbors[base + i]);
+                int neighborBase = 4 * neighbor;
+                for (int j = 0; j < degree[neighbor]; j++) {
+                    if (decode(neighbors[neighborBase + j]) == city) {
+                        neighbors[neighborBase + j] = neighbors[neighborBase + --degree[neighbor]];
+                        break;
+                    }
+                }
             }
-            if (!citiesInChild2.contains(parent1[i])) {
-                citiesNotInChild2.add(parent1[i]);
+
+            int last = unvisited[--count];
+            unvisited[position[city]] = last;
+            position[last] = position[city];
+        }
+
+        /**
+         * Builds a child tour, emptying the table.
+         */
+        int[] buildTour (CityTable table, int start, Random random) {
+            int[] tour = TourPool.take(unvisited.length);
+            int city = start;
+
+            for (int i = 0; i < tour.length; i++) {
+                tour[i] = city;
+                visit(city);
+                if (count == 0) {
+                    break;
+                }
+                int next = nextCity(table, city);
+                city = (next == EMPTY) ? unvisited[random.nextInt(count)] : next;
             }
+
+            return tour;
         }
 
-        // Find which spots are still empty in each child.
-        ArrayList<Integer> emptySpotsC1 = new ArrayList<>();
-        ArrayList<Integer> emptySpotsC2 = new ArrayList<>();
-        for (int i = 0; i < totalCities; i++) {
-            if (child1[i] == null) {
-                emptySpotsC1.add(i);
+        /**
+         * Picks the neighbor to go to from a city.
+         * @return  the neighbor, or EMPTY if the city has no neighbors left
+         */
+        private int nextCity (CityTable table, int city) {
+            int base = 4 * city;
+            int best = EMPTY;
+            float bestDistance = 0;
+
+            for (int i = 0; i < degree[city]; i++) {
+                int entry = neighbors[base + i];
+                if (entry < 0) {
+                    return ~entry;
+                }
+                if (best == EMPTY || degree[entry] < degree[best]) {
+                    best = entry;
+                    bestDistance = table.distance(city, entry);
+                } else if (degree[entry] == degree[best]) {
+                    float distance = table.distance(city, entry);
+                    if (distance < bestDistance) {
+                        best = entry;
+                        bestDistance = distance;
+                    }
+                }
             }
-            if (child2[i] == null) {
-                emptySpotsC2.add(i);
+
+            return best;
+        }
+
+        private static int decode (int entry) {
+            return (entry < 0) ? ~entry : entry;
+        }
+    }
+
+    /**
+     * A set of cities (or positions) as a bitset, cleared in a single pass
+     * over its words.
+     */
+    private static class BitSet {
+
+        private long[] words = new long[0];
+        private int size;
+
+        void reset (int size) {
+            int length = (size + 63) >>> 6;
+            if (words.length < length) {
+                words = new long[length];
+            } else {
+                Arrays.fill(words, 0, length, 0L);
             }
+            this.size = size;
         }
 
-        // Fill in the empty spots.
-        for (City city : citiesNotInChild1) {
-            child1[emptySpotsC1.remove(0)] = city;
+        boolean get (int index) {
+            return (words[index >>> 6] & (1L << index)) != 0;
         }
-        for (City city : citiesNotInChild2) {
-            child2[emptySpotsC2.remove(0)] = city;
+
+        void set (int index) {
+            words[index >>> 6] |= 1L << index;
         }
+    }
 
-        Chromosome childOne = new Chromosome(child1);
-        Chromosome childTwo = new Chromosome(child2);
-        children.add(childOne);
-        children.add(childTwo);
+    /**
+     * The working arrays of the crossovers of one thread. They grow to the
+     * largest tour seen and are then reused by every crossover.
+     */
+    private static class Scratch {
+
+        private final BitSet inChild1 = new BitSet();   // Cities (or positions) already in child 1.
+        private final BitSet inChild2 = new BitSet();
+        private int[] missing1 = new int[0];            // Cities still to be placed in child 1.
+        private int[] missing2 = new int[0];
+        private int[] position1 = new int[0];           // Position of each city in parent 1.
+        private int[] position2 = new int[0];
+        private EdgeTable edgeTable;
+
+        /**
+         * Makes the arrays big enough for a tour and clears the bitsets.
+         */
+        Scratch reset (int size) {
+            if (position1.length < size) {
+                missing1 = new int[size];
+                missing2 = new int[size];
+                position1 = new int[size];
+                position2 = new int[size];
+            }
+            inChild1.reset(size);
+            inChild2.reset(size);
+            return this;
+        }
 
-        return children;
+        EdgeTable getEdgeTable (int size) {
+            if (edgeTable == null || edgeTable.size() != size) {
+                edgeTable = new EdgeTable(size);
+            }
+            return edgeTable;
+        }
     }
 
     public static void main(String[] args) {
         Population pop = Population.getRandomPopulation(10, 10, new Random());
-        Chromosome c1 = new Chromosome(pop.getCities(), new Random());
-        Chromosome c2 = new Chromosome(pop.getCities(), new Random());
+        Chromosome c1 = new Chromosome(pop.getCityTable(), new Random());
+        Chromosome c2 = new Chromosome(pop.getCityTable(), new Random());
 
         System.out.println("Children:");
         System.out.println(c1);
@@ -3,13 +3,24 @@ package GeneticAlgorithms;
 import Display.WindowGraph;
 import Display.WindowTSP;
 import GeneticObjects.Chromosome;
-import GeneticObjects.City;
+import GeneticObjects.ChromosomeSet;
 import GeneticObjects.Population;
+import GeneticObjects.TourPool;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.PriorityQueue;
+import java.util.Arrays;
 import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * The Genetic Algorithm system. This class brings together the entire process
@@ -27,9 +38,39 @@ public class GeneticAlgorithm {
     private double mutationRate;    // Odds of mutation occurring.
     private boolean forceUniqueness;// If true, population always has all unique members.
     private double localSearchRate; // Odds of local search occurring on entire generation.
+    private LocalSearch localSearch;
     private Random random;
     private CrossoverType crossoverType = CrossoverType.UNIFORM_ORDER;
     private MutationType mutationType = MutationType.INSERTION;
+    private SelectionType selectionType = SelectionType.TOURNAMENT;
+    private Selection.Sampler sampler;      // Rebuilt every generation, unless selection is by tournament.
+
+    // Steady-state mode.
+    private int childrenPerStep;    // 0 for a whole new population every generation.
+    private ReplacementType replacementType = ReplacementType.WORST;
+    private Chromosome[] stepChildren;
+    private boolean[] stepChildrenAreNew;   // See breed.
+    private int[] worstFirst;       // Indexes of the population in a max-heap by length.
+
+    private int threads;            // Threads used for breeding the next generation.
+    private ForkJoinPool pool;
+    private ChromosomeSet chromosomeSet;    // Reused for finding duplicates.
+
+    private int generation;             // The number of generations run so far.
+    private File checkpointFile;        // Null if no checkpoints are saved.
+    private int checkpointInterval;     // Generations between two checkpoints.
+    private ExecutorService checkpointWriter;
+    private Future<?> pendingCheckpoint;
+
+    // For stopping before maxGen.
+    private ArrayList<TerminationCriterion> terminationCriteria;
+    private String stopReason;
+    private long startTime;             // System.nanoTime() when the run started.
+    private int bestDistanceSoFar;
+    private int lastImprovement;        // The generation the best distance last went down.
+
+    // Children are bred in chunks of this size when breeding in parallel.
+    private static final int CHUNK_SIZE = 64;
 
     private boolean finished;
 
@@ -38,10 +79,14 @@ public class GeneticAlgorithm {
     private int averageDistanceOfLastGeneration;
     private int bestDistanceOfFirstGeneration;
     private int bestDistanceOfLastGeneration;
-    private ArrayList<Integer> averageDistanceOfEachGeneration;
-    private ArrayList<Integer> bestDistanceOfEachGeneration;
-    private int areaUnderAverageDistances;
-    private int areaUnderBestDistances;
+    private History averageDistanceOfEachGeneration;
+    private History bestDistanceOfEachGeneration;
+    private long areaUnderAverageDistances;
+    private long areaUnderBestDistances;
+    private Metrics metrics;            // Null unless detailed metrics are collected.
+
+    // The most generations kept in each History before it starts dropping some.
+    private static final int HISTORY_CAPACITY = 1 << 16;
 
     /**
      * Construct the GeneticAlgorithm object with default values.
@@ -56,17 +101,72 @@ public class GeneticAlgorithm {
         mutationRate = 0.05;
         forceUniqueness = false;
         localSearchRate = 0.0;
+        localSearch = new LocalSearch();
         random = new Random();
         crossoverType = CrossoverType.UNIFORM_ORDER;
         mutationType = MutationType.INSERTION;
+        selectionType = SelectionType.TOURNAMENT;
+        sampler = new Selection.Sampler();
+        childrenPerStep = 0;
+        replacementType = ReplacementType.WORST;
+        threads = 1;
+        terminationCriteria = new ArrayList<>();
+        finished = false;
+
+        averageDistanceOfEachGeneration = new History(HISTORY_CAPACITY);
+        bestDistanceOfEachGeneration = new History(HISTORY_CAPACITY);
+        areaUnderAverageDistances = 0;
+        areaUnderBestDistances = 0;
+    }
+
+    /**
+     * Construct a GeneticAlgorithm with the same parameters and initial
+     * population as another one, that has not been run yet.
+     * @param other     the GeneticAlgorithm to copy the parameters of
+     */
+    private GeneticAlgorithm (GeneticAlgorithm other) {
+        initialPop = other.initialPop;
+        population = initialPop.deepCopy();
+        maxGen = other.maxGen;
+        k = other.k;
+        elitismValue = other.elitismValue;
+        crossoverRate = other.crossoverRate;
+        mutationRate = other.mutationRate;
+        forceUniqueness = other.forceUniqueness;
+        localSearchRate = other.localSearchRate;
+        localSearch = other.localSearch;
+        random = new Random();
+        crossoverType = other.crossoverType;
+        mutationType = other.mutationType;
+        selectionType = other.selectionType;
+        sampler = new Selection.Sampler();
+        childrenPerStep = other.childrenPerStep;
+        replacementType = other.replacementType;
+        threads = other.threads;
+        terminationCriteria = new ArrayList<>(other.terminationCriteria);
         finished = false;
 
-        averageDistanceOfEachGeneration = new ArrayList<>();
-        bestDistanceOfEachGeneration = new ArrayList<>();
+        averageDistanceOfFirstGeneration = other.averageDistanceOfFirstGeneration;
+        bestDistanceOfFirstGeneration = other.bestDistanceOfFirstGeneration;
+        bestDistanceSoFar = bestDistanceOfFirstGeneration;
+        averageDistanceOfEachGeneration = new History(HISTORY_CAPACITY);
+        bestDistanceOfEachGeneration = new History(HISTORY_CAPACITY);
         areaUnderAverageDistances = 0;
         areaUnderBestDistances = 0;
     }
 
+    /**
+     * Get a new GeneticAlgorithm with the same parameters and initial
+     * population, ready to be run independently of this one (for example on
+     * another thread). The LocalSearch is shared, since it can be used by
+     * several threads at once. The copy gets a new Random object, which
+     * should be replaced with setRandom for reproducible runs.
+     * @return  the copy
+     */
+    public GeneticAlgorithm copy () {
+        return new GeneticAlgorithm(this);
+    }
+
     public void setPopulation (Population population) {
         if (population == null) {
             throw new IllegalArgumentException("Parameter cannot be null.");
@@ -75,6 +175,8 @@ public class GeneticAlgorithm {
         this.population = initialPop.deepCopy();
         averageDistanceOfFirstGeneration = population.getAverageDistance();
         bestDistanceOfFirstGeneration = population.getMostFit().getDistance();
+        bestDistanceSoFar = bestDistanceOfFirstGeneration;
+        lastImprovement = 0;
     }
 
     public void setMaxGen (int maxGen) {
@@ -120,6 +222,18 @@ public class GeneticAlgorithm {
         this.localSearchRate = localSearchRate;
     }
 
+    /**
+     * Set the LocalSearch used on the children picked by the local search rate
+     * (and on the elite, when the rate is above 0).
+     * @param localSearch   the configured LocalSearch
+     */
+    public void setLocalSearch (LocalSearch localSearch) {
+        if (localSearch == null) {
+            throw new IllegalArgumentException("Parameter cannot be null.");
+        }
+        this.localSearch = localSearch;
+    }
+
     public void setRandom (Random random) {
         if (random == null) {
             throw new IllegalArgumentException("Parameter cannot be null.");
@@ -129,29 +243,97 @@ public class GeneticAlgorithm {
 
     public void forceUniqueness (boolean forceUniqueness) {
 
-        int cities = population.getCities().length;
+        int cities = population.getCityTable().size();
         int popSize = population.size();
 
-        // If the popSize is greater than the factorial of cities, uniqueness not possible.
-        // Example: if there are 2 cities but the population size is 100, it is impossible
-        // to have all unique values since there are at most 2! = 2 unique possibilities.
-        if ((cities == 1 && popSize > 1) ||
-                (cities == 2 && popSize > 2) ||
-                (cities == 3 && popSize > 6) ||
-                (cities == 4 && popSize > 24) ||
-                (cities == 5 && popSize > 120) ||
-                (cities == 6 && popSize > 720) ||
-                (cities == 7 && popSize > 5_040) ||
-                (cities == 8 && popSize > 40_320) ||
-                (cities == 9 && popSize > 362_880)) {
+        if (forceUniqueness && !Population.canBeUnique(cities, popSize)) {
             throw new IllegalStateException("Cannot force uniqueness when" +
-                    " the population size is greater than the factorial" +
-                    " of the total number of cities.");
+                    " the population size is greater than the number of" +
+                    " distinct tours through the cities.");
         }
 
         this.forceUniqueness = forceUniqueness;
     }
 
+    /**
+     * Check whether the population is kept free of duplicate tours.
+     * @return  true if uniqueness is forced
+     */
+    public boolean isForcingUniqueness () {
+        return forceUniqueness;
+    }
+
+    /**
+     * Set the number of threads used to breed each generation. With a single
+     * thread (the default) the children are bred one after another using the
+     * Random object of the GeneticAlgorithm. With more threads the results
+     * for a fixed seed are the same for any number of threads, but differ
+     * from the results with a single thread.
+     * @param threads   the number of threads, at least 1
+     */
+    public void setThreads (int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Parameter must be at least 1.");
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * Breed a few children at a time and put each one in place of a member
+     * of the population (a steady-state GA), instead of breeding a whole new
+     * population every generation. The population array is kept and only
+     * the replaced members become garbage, so memory use stays flat however
+     * many generations are run. The children of a step are bred from the
+     * population as it is after the step before.
+     * <br/>
+     * A child only replaces a member that is longer than it, so the best
+     * tour is never lost and the elitism value is not used. A generation is
+     * as many children as the population holds (rounded up to whole steps),
+     * so the generations, the
+     * results and the termination criteria mean about the same as without
+     * steady state. The children are bred on the thread running the
+     * GeneticAlgorithm; the number of threads is not used. The samplers of
+     * roulette, rank and stochastic universal selection are built once per
+     * generation, so they do not see the members replaced since.
+     * @param childrenPerStep   the number of children bred per step, or 0 for
+     *                          a whole new population every generation
+     * @param replacementType   which member each child replaces
+     */
+    public void setSteadyState (int childrenPerStep, ReplacementType replacementType) {
+        if (childrenPerStep < 0) {
+            throw new IllegalArgumentException("Parameter cannot be negative.");
+        }
+        if (replacementType == null) {
+            throw new IllegalArgumentException("Parameter cannot be null.");
+        }
+        this.childrenPerStep = childrenPerStep;
+        this.replacementType = replacementType;
+    }
+
+    /**
+     * Collect detailed metrics of each generation into a Metrics object.
+     * @param metrics   the Metrics to record into, or null to stop collecting
+     */
+    public void setMetrics (Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public Metrics getMetrics () {
+        return metrics;
+    }
+
+    /**
+     * Add a condition under which the run stops before maxGen generations.
+     * The run stops as soon as any one of its criteria is met.
+     * @param criterion     the criterion, see TerminationCriterion for the usual ones
+     */
+    public void addTerminationCriterion (TerminationCriterion criterion) {
+        if (criterion == null) {
+            throw new IllegalArgumentException("Parameter cannot be null.");
+        }
+        terminationCriteria.add(criterion);
+    }
+
     public void setCrossoverType (CrossoverType crossoverType) {
         this.crossoverType = crossoverType;
     }
@@ -160,6 +342,73 @@ public class GeneticAlgorithm {
         this.mutationType = mutationType;
     }
 
+    /**
+     * Set how the parents are picked. Tournament selection (the default)
+     * uses k; the other kinds are described in Selection.Sampler.
+     * @param selectionType     the kind of selection
+     */
+    public void setSelectionType (SelectionType selectionType) {
+        this.selectionType = selectionType;
+    }
+
+    /**
+     * Get the number of generations run so far.
+     * @return  the current generation
+     */
+    public int getGeneration () {
+        return generation;
+    }
+
+    /**
+     * Get the time since the run was started.
+     * @return  the elapsed time in milliseconds
+     */
+    public long getElapsedTime () {
+        return (System.nanoTime() - startTime) / 1_000_000L;
+    }
+
+    public int getBestDistanceSoFar () {
+        return bestDistanceSoFar;
+    }
+
+    /**
+     * Get the number of generations since the best distance last went down.
+     * @return  0 if the last generation found a shorter tour
+     */
+    public int getGenerationsWithoutImprovement () {
+        return generation - lastImprovement;
+    }
+
+    /**
+     * Get how different the tours of the population are, as the standard
+     * deviation of their lengths divided by the mean length. Close to 0 once
+     * the population is made of the same few tours.
+     * @return  the diversity of the current population
+     */
+    public double getDiversity () {
+        double sum = 0;
+        double sumOfSquares = 0;
+        for (int i = 0; i < population.size(); i++) {
+            double length = population.get(i).getLength();
+            sum += length;
+            sumOfSquares += length * length;
+        }
+        double mean = sum / population.size();
+        double variance = Math.max(0, sumOfSquares / population.size() - mean * mean);
+        return (mean == 0) ? 0 : Math.sqrt(variance) / mean;
+    }
+
+    /**
+     * Get the reason the last run stopped.
+     * @return  a description of the criterion that stopped the run
+     */
+    public String getStopReason () {
+        if (!finished) {
+            throw new IllegalArgumentException("Genetic algorithm was never run.");
+        }
+        return stopReason;
+    }
+
     public int getAverageDistanceOfFirstGeneration () {
         if (!finished) {
             throw new IllegalArgumentException("Genetic algorithm was never run.");
@@ -192,24 +441,48 @@ public class GeneticAlgorithm {
         if (!finished) {
             throw new IllegalArgumentException("Genetic algorithm was never run.");
         }
-        return averageDistanceOfEachGeneration;
+        return averageDistanceOfEachGeneration.toList();
     }
 
     public ArrayList<Integer> getBestDistanceOfEachGeneration() {
+        if (!finished) {
+            throw new IllegalArgumentException("Genetic algorithm was never run.");
+        }
+        return bestDistanceOfEachGeneration.toList();
+    }
+
+    /**
+     * Get the average distance of each generation without boxing. Runs of
+     * more than 65536 generations only keep some of them, evenly spaced.
+     * @return  the History of the average distances
+     */
+    public History getAverageDistanceHistory () {
+        if (!finished) {
+            throw new IllegalArgumentException("Genetic algorithm was never run.");
+        }
+        return averageDistanceOfEachGeneration;
+    }
+
+    /**
+     * Get the best distance of each generation without boxing. Runs of more
+     * than 65536 generations only keep some of them, evenly spaced.
+     * @return  the History of the best distances
+     */
+    public History getBestDistanceHistory () {
         if (!finished) {
             throw new IllegalArgumentException("Genetic algorithm was never run.");
         }
         return bestDistanceOfEachGeneration;
     }
 
-    public int getAreaUnderAverageDistances () {
+    public long getAreaUnderAverageDistances () {
         if (!finished) {
             throw new IllegalArgumentException("Genetic algorithm was never run.");
         }
         return areaUnderAverageDistances;
     }
 
-    public int getAreaUnderBestDistances () {
+    public long getAreaUnderBestDistances () {
         if (!finished) {
             throw new IllegalArgumentException("Genetic algorithm was never run.");
         }
@@ -226,27 +499,146 @@ public class GeneticAlgorithm {
 
     public void showGraphInWindow () {
         ArrayList<ArrayList<Integer>> yValues = new ArrayList<>();
-        yValues.add(averageDistanceOfEachGeneration);
-        yValues.add(bestDistanceOfEachGeneration);
+        yValues.add(averageDistanceOfEachGeneration.toList());
+        yValues.add(bestDistanceOfEachGeneration.toList());
         ArrayList<String> legend = new ArrayList<>();
         legend.add("Average Evaluation of Entire Population");
         legend.add("Evaluation of Fittest Member");
         new WindowGraph(yValues, legend);
     }
 
+    /**
+     * Runs the generations that are left to run, which is all of them
+     * unless the run was resumed from a checkpoint.
+     */
     public void run () {
-        for (int i = 0; i < maxGen; i++) {
+        start();
+        while (!shouldStop()) {
+            nextGeneration();
+            checkpointIfDue();
+        }
+        finish();
+    }
+
+    /**
+     * Starts the generations that are left to run on a new thread and
+     * returns at once. See AnytimeRun for reading the best tour while the
+     * run goes on.
+     * @return  the run
+     */
+    public AnytimeRun runAsync () {
+        return runAsync(command -> new Thread(command, "GeneticAlgorithm").start());
+    }
+
+    /**
+     * Starts the generations that are left to run on an Executor and
+     * returns at once. The generation loop takes up a thread of the Executor
+     * until the run is done.
+     * @param executor  runs the generation loop
+     * @return          the run
+     */
+    public AnytimeRun runAsync (Executor executor) {
+        if (executor == null) {
+            throw new IllegalArgumentException("Parameter cannot be null.");
+        }
+        AnytimeRun run = new AnytimeRun(this);
+        run.start(executor);
+        return run;
+    }
+
+    /**
+     * Replaces the population with the next generation and records its results.
+     */
+    void nextGeneration () {
+        long start = (metrics != null) ? System.nanoTime() : 0;
+        if (childrenPerStep > 0) {
+            replaceInPlace();
+        } else {
             population = createNextGeneration();
-            averageDistanceOfEachGeneration.add(population.getAverageDistance());
-            areaUnderAverageDistances += population.getAverageDistance();
-            bestDistanceOfEachGeneration.add(population.getMostFit().getDistance());
-            areaUnderBestDistances += population.getMostFit().getDistance();
         }
+        generation++;
+        recordGeneration();
+        if (metrics != null) {
+            metrics.record(generation, population, System.nanoTime() - start);
+        }
+    }
+
+    private void recordGeneration () {
+        averageDistanceOfEachGeneration.add(population.getAverageDistance());
+        areaUnderAverageDistances += population.getAverageDistance();
+        bestDistanceOfEachGeneration.add(population.getMostFit().getDistance());
+        areaUnderBestDistances += population.getMostFit().getDistance();
+
+        if (population.getMostFit().getDistance() < bestDistanceSoFar) {
+            bestDistanceSoFar = population.getMostFit().getDistance();
+            lastImprovement = generation;
+        }
+    }
+
+    /**
+     * Starts the clock of the run, for the time limit.
+     */
+    void start () {
+        startTime = System.nanoTime();
+        stopReason = null;
+    }
+
+    /**
+     * Check whether the run is over, either because maxGen generations have
+     * been run or because one of the termination criteria is met. Checked
+     * before every generation.
+     * @return  true if no more generations should be run
+     */
+    boolean shouldStop () {
+        if (generation >= maxGen) {
+            stopReason = "Maximum generation of " + maxGen + " reached.";
+            return true;
+        }
+        for (TerminationCriterion criterion : terminationCriteria) {
+            if (criterion.isMet(this)) {
+                stopReason = criterion.getDescription();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void setStopReason (String stopReason) {
+        this.stopReason = stopReason;
+    }
+
+    /**
+     * Records the results of the last generation, after which they can be read.
+     */
+    void finish () {
+        waitForCheckpoint();
+        if (checkpointWriter != null) {
+            checkpointWriter.shutdown();
+            checkpointWriter = null;
+        }
+
         finished = true;
         averageDistanceOfLastGeneration = population.getAverageDistance();
         bestDistanceOfLastGeneration = population.getMostFit().getDistance();
     }
 
+    /**
+     * Get the current population, which the island model migrates
+     * Chromosomes in and out of between generations.
+     * @return  the population of the current generation
+     */
+    Population getPopulation () {
+        return population;
+    }
+
+    int getMaxGen () {
+        return maxGen;
+    }
+
+    Random getRandom () {
+        return random;
+    }
+
     /**
      * Displays the fittest Chromosome of each Population to the screen.
      * Also displays a graph that contains the average distance per population.
@@ -257,23 +649,19 @@ public class GeneticAlgorithm {
 
         Chromosome mostFitLast = population.getMostFit();
         win.draw(mostFitLast);
-        for (int i = 0; i < maxGen; i++) {
-            population = createNextGeneration();
+        start();
+        while (!shouldStop()) {
+            nextGeneration();
 
             Chromosome mostFit = population.getMostFit();
             if (!mostFit.equals(mostFitLast)) {
                 win.draw(mostFit);
             }
             mostFitLast = mostFit;
-            averageDistanceOfEachGeneration.add(population.getAverageDistance());
-            areaUnderAverageDistances += population.getAverageDistance();
-            bestDistanceOfEachGeneration.add(population.getMostFit().getDistance());
-            areaUnderBestDistances += population.getMostFit().getDistance();
+            checkpointIfDue();
         }
 
-        finished = true;
-        averageDistanceOfLastGeneration = population.getAverageDistance();
-        bestDistanceOfLastGeneration = population.getMostFit().getDistance();
+        finish();
     }
 
     /**
@@ -282,46 +670,41 @@ public class GeneticAlgorithm {
      * the package; Selection, Crossover & Mutation.
      * @return  the new generation
      */
-    private Population createNextGeneration () {
+    Population createNextGeneration () {
+
+        if (threads > 1) {
+            return createNextGenerationInParallel();
+        }
 
         Population nextGen = new Population(population.size());
 
         performElitism(nextGen);
 
-        HashSet<Chromosome> chromosomesAdded = new HashSet<>(); // For checking duplicates.
-
-        while (nextGen.size() < population.size()-1) {
-
-            Chromosome p1 = Selection.tournamentSelection(population, k, random);
-            Chromosome p2 = Selection.tournamentSelection(population, k, random);
+        ChromosomeSet chromosomesAdded = getChromosomeSet(); // For checking duplicates.
+        Chromosome[] children = new Chromosome[2];
+        Metrics.Counters counters = (metrics != null) ? metrics.getCounters() : null;
+        int picks = 0;
 
-            boolean doCrossover     = (random.nextDouble() <= crossoverRate);
-            boolean doMutate1       = (random.nextDouble() <= mutationRate);
-            boolean doMutate2       = (random.nextDouble() <= mutationRate);
-            boolean doLocalSearch1  = (random.nextDouble() <= localSearchRate);
-            boolean doLocalSearch2  = (random.nextDouble() <= localSearchRate);
+        prepareSelection(random);
 
-            if (doCrossover) {
-                ArrayList<Chromosome> children = crossover(p1, p2);
-                p1 = children.get(0);
-                p2 = children.get(1);
-            }
-
-            if (doMutate1) p1 = mutate(p1);
-            if (doMutate2) p2 = mutate(p2);
+        while (nextGen.size() < population.size()-1) {
 
-            if (doLocalSearch1) p1 = performLocalSearch(p1);
-            if (doLocalSearch2) p2 = performLocalSearch(p2);
+            int made = breed(random, children, 0, picks, counters);
+            picks += 2;
+            Chromosome p1 = children[0];
+            Chromosome p2 = children[1];
 
             if (forceUniqueness) {
-                if (!chromosomesAdded.contains(p1)) {
-                    chromosomesAdded.add(p1);
+                if (chromosomesAdded.add(p1)) {
                     nextGen.add(p1);
+                } else if ((made & 1) != 0) {
+                    TourPool.recycle(p1);
                 }
 
-                if (!chromosomesAdded.contains(p2)) {
-                    chromosomesAdded.add(p2);
+                if (chromosomesAdded.add(p2)) {
                     nextGen.add(p2);
+                } else if ((made & 2) != 0) {
+                    TourPool.recycle(p2);
                 }
             } else {
                 nextGen.add(p1);
@@ -332,7 +715,7 @@ public class GeneticAlgorithm {
 
         // If there is one space left, fill it up.
         if (nextGen.size() != population.size()) {
-            nextGen.add(Selection.tournamentSelection(population, k, random));
+            nextGen.add(select(random, picks));
         }
 
         if (nextGen.size() != population.size()) {
@@ -342,82 +725,511 @@ public class GeneticAlgorithm {
         return nextGen;
     }
 
-    private void performElitism (Population nextGen) {
-        PriorityQueue<Chromosome> priorityQueue = new PriorityQueue<>();
+    /**
+     * Generates the next generation the same way as createNextGeneration, but
+     * breeds the children on several threads. The children are split into
+     * chunks of a fixed size and every chunk gets its own Random, seeded from
+     * a SplittableRandom stream that is seeded from the main Random. Which
+     * chunk gets which seed does not depend on the threads that run them,
+     * so a fixed seed gives the same result with any number of threads
+     * above one. A single thread breeds in createNextGeneration, which uses
+     * the Random object differently, so its results are not the same.
+     * @return  the new generation
+     */
+    private Population createNextGenerationInParallel () {
+
+        Population nextGen = new Population(population.size());
+
+        performElitism(nextGen);
+
+        Chromosome[] children = new Chromosome[population.size() - nextGen.size()];
+        boolean[] childrenAreNew = new boolean[children.length];
+        // The children thrown away as duplicates, one for each child still to
+        // be bred, null for a parent passed on as it is.
+        Chromosome[] dropped = forceUniqueness ? new Chromosome[children.length] : null;
+        int filled = 0;
+        int picks = 0;
+
+        prepareSelection(random);
 
-        for (Chromosome chromosome : population) {
-            priorityQueue.add(chromosome);
+        while (filled < children.length) {
+
+            SplittableRandom seeds = new SplittableRandom(random.nextLong());
+            int chunks = (children.length - filled + CHUNK_SIZE - 1) / CHUNK_SIZE;
+            long[] chunkSeeds = new long[chunks];
+            for (int i = 0; i < chunkSeeds.length; i++) {
+                chunkSeeds[i] = seeds.nextLong();
+            }
+
+            getPool().invoke(new BreedingTask(children, childrenAreNew, dropped, filled, picks, chunkSeeds, 0, chunks));
+            picks += children.length - filled;
+
+            if (forceUniqueness) {
+                filled = removeDuplicates(children, childrenAreNew, dropped, filled);
+            } else {
+                filled = children.length;
+            }
         }
 
-        for (int i = 0; i < elitismValue; i++) {
+        // Copy all the children in at once rather than adding them one by one.
+        nextGen.addAll(children);
 
-            Chromosome chromosome = priorityQueue.poll();
+        return nextGen;
+    }
 
-            if (localSearchRate > 0) {
-                chromosome = performLocalSearch(chromosome);
+    /**
+     * Breeds a generation of children in steps of childrenPerStep and puts
+     * each child in place of the member picked by the replacement type, if
+     * the child is shorter. The population stays the same object, and the
+     * tours of the children that do not get in go back to the TourPool, so
+     * once it has filled up most children do not allocate a tour.
+     */
+    private void replaceInPlace () {
+
+        int size = population.size();
+        if (stepChildren == null || stepChildren.length != childrenPerStep) {
+            stepChildren = new Chromosome[childrenPerStep];
+            stepChildrenAreNew = new boolean[childrenPerStep];
+        }
+        Metrics.Counters counters = (metrics != null) ? metrics.getCounters() : null;
+
+        // The members, for turning away children that are already in the population.
+        ChromosomeSet members = null;
+        if (forceUniqueness) {
+            members = getChromosomeSet();
+            for (int i = 0; i < size; i++) {
+                members.add(population.get(i));
             }
+        }
 
-            //if (random.nextDouble() < localSearchRate)
-            //    chromosome = performLocalSearch(chromosome);
+        // Linear rank selection sorts the population, so the samplers are
+        // built before the heap of the population indexes.
+        prepareSelection(random);
+        if (replacementType == ReplacementType.WORST) {
+            buildWorstFirst();
+        }
+        int picks = 0;
+
+        for (int bred = 0; bred < size; bred += childrenPerStep) {
+            for (int i = 0; i < childrenPerStep; i += 2) {
+                int made = breed(random, stepChildren, i, picks, counters);
+                stepChildrenAreNew[i] = (made & 1) != 0;
+                if (i + 1 < childrenPerStep) {
+                    stepChildrenAreNew[i + 1] = (made & 2) != 0;
+                }
+                picks += 2;
+            }
+            for (int i = 0; i < childrenPerStep; i++) {
+                // A child that did not get in is garbage as soon as it is made.
+                if (!replace(stepChildren[i], members) && stepChildrenAreNew[i]) {
+                    TourPool.recycle(stepChildren[i]);
+                }
+            }
+        }
 
-            nextGen.add(chromosome);
+        // Do not keep the last children alive until the next generation.
+        Arrays.fill(stepChildren, null);
+    }
+
+    /**
+     * Puts a child in place of a member of the population, if the child is
+     * shorter than it and not already in the population.
+     * @param child     the child
+     * @param members   the members of the population, null if duplicates are allowed
+     * @return          true if the child was put in the population
+     */
+    private boolean replace (Chromosome child, ChromosomeSet members) {
+        if (members != null && members.contains(child)) {
+            return false;
+        }
+
+        int victim;
+        if (replacementType == ReplacementType.TOURNAMENT_LOSER) {
+            victim = tournamentLoser();
+        } else { // Default is the worst.
+            victim = worstFirst[0];
+            // Cheap check that nothing reordered the population under the heap.
+            if ((worstFirst.length > 1 && longer(worstFirst[1], victim)) ||
+                    (worstFirst.length > 2 && longer(worstFirst[2], victim))) {
+                throw new AssertionError("The population was reordered after the heap was built.");
+            }
+        }
+
+        Chromosome replaced = population.get(victim);
+        if (child.getLength() >= replaced.getLength()) {
+            return false;
         }
+
+        population.set(victim, child);
+        if (members != null) {
+            members.remove(replaced);
+            members.add(child);
+        }
+        if (replacementType == ReplacementType.WORST) {
+            siftDownWorst(0);
+        }
+        return true;
     }
 
-    private Chromosome performLocalSearch (Chromosome chromosome) {
+    /**
+     * Picks k members at random and returns the longest of them.
+     * @return  the index of the longest member picked
+     */
+    private int tournamentLoser () {
+        int size = population.size();
+        int loser = random.nextInt(size);
+        for (int pick = 1; pick < k; pick++) {
+            int index = random.nextInt(size);
+            if (population.get(index).getLength() > population.get(loser).getLength()) {
+                loser = index;
+            }
+        }
+        return loser;
+    }
 
-        int bestDistance = chromosome.getDistance();
-        City[] array = chromosome.getArray();
-        City[] bestArray = array.clone();
+    /**
+     * Puts the indexes of the population in worstFirst as a max-heap by
+     * length, so that the longest member is always found at worstFirst[0].
+     * Built once per generation in O(n), after which replacing the longest
+     * member takes O(log n).
+     */
+    private void buildWorstFirst () {
+        int size = population.size();
+        if (worstFirst == null || worstFirst.length != size) {
+            worstFirst = new int[size];
+        }
+        for (int i = 0; i < size; i++) {
+            worstFirst[i] = i;
+        }
+        for (int i = size / 2 - 1; i >= 0; i--) {
+            siftDownWorst(i);
+        }
+    }
 
-        for (int i = 0; i < array.length-1; i++) {
-            for (int k = i+1; k < array.length; k++) {
+    private void siftDownWorst (int i) {
+        int size = worstFirst.length;
+        while (true) {
+            int largest = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < size && longer(worstFirst[left], worstFirst[largest])) largest = left;
+            if (right < size && longer(worstFirst[right], worstFirst[largest])) largest = right;
+            if (largest == i) {
+                return;
+            }
+            int temp = worstFirst[i];
+            worstFirst[i] = worstFirst[largest];
+            worstFirst[largest] = temp;
+            i = largest;
+        }
+    }
 
-                City[] temp = array.clone();
+    private boolean longer (int a, int b) {
+        return population.get(a).getLength() > population.get(b).getLength();
+    }
 
-                // Reverse order from i to k.
-                for (int j = i; j <= (i+k)/2; j++) {
-                    swap(temp, j, k - (j-i));
-                }
+    /**
+     * Moves the children that are not duplicates of an earlier child to the
+     * front of the array, keeping their order. The duplicates that are new
+     * Chromosomes are put in dropped, so that the threads breeding the
+     * children in their place can give their tours back to the TourPool of
+     * the thread that uses them. As many children are dropped as are bred
+     * in their place, so each one gets a slot.
+     * @param children  the children, of which the first few are known to be unique
+     * @param areNew    for each child, whether it is a new Chromosome
+     * @param dropped   where to put the dropped children, null for those that are not new
+     * @param unique    the number of children known to be unique
+     * @return          the number of unique children now at the front of the array
+     */
+    private int removeDuplicates (Chromosome[] children, boolean[] areNew, Chromosome[] dropped, int unique) {
+        ChromosomeSet chromosomesAdded = getChromosomeSet();
+        for (int i = 0; i < unique; i++) {
+            chromosomesAdded.add(children[i]);
+        }
+        int kept = unique;
+        for (int i = unique; i < children.length; i++) {
+            if (chromosomesAdded.add(children[i])) {
+                children[kept] = children[i];
+                areNew[kept++] = areNew[i];
+            } else {
+                dropped[i - kept] = areNew[i] ? children[i] : null;
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * Selects two parents from the population and produces two children
+     * from them through crossover, mutation and local search. The distances
+     * of the children are calculated here, so that the parallel mode also
+     * does the evaluation in parallel.
+     * @param random    the Random object used for selection and the operators
+     * @param children  the array to put the children in
+     * @param index     the index of the first child, the second child is only
+     *                  put after it if there is room in the array
+     * @param pick      the number of the first parent among the parents picked
+     *                  this generation, for stochastic universal sampling
+     * @param counters  where to count and time the operators, null if metrics
+     *                  are not collected
+     * @return          which children are new Chromosomes rather than parents
+     *                  passed on as they are: 1 for the first, 2 for the second,
+     *                  3 for both. Only a new child may be given back to the
+     *                  TourPool if it is thrown away, since nothing else can reach it.
+     */
+    private int breed (Random random, Chromosome[] children, int index, int pick, Metrics.Counters counters) {
+
+        long time = (counters != null) ? System.nanoTime() : 0;
 
-                Chromosome c = new Chromosome(temp);
+        Chromosome p1 = select(random, pick);
+        Chromosome p2 = select(random, pick + 1);
 
-                int distance = c.getDistance();
-                if (distance < bestDistance) {
-                    bestDistance = distance;
-                    bestArray = c.getArray();
+        if (counters != null) time = counters.selected(time);
+
+        boolean doCrossover     = (random.nextDouble() <= crossoverRate);
+        boolean doMutate1       = (random.nextDouble() <= mutationRate);
+        boolean doMutate2       = (random.nextDouble() <= mutationRate);
+        boolean doLocalSearch1  = (random.nextDouble() <= localSearchRate);
+        boolean doLocalSearch2  = (random.nextDouble() <= localSearchRate);
+
+        // Whether each child is a new Chromosome, made by one of the operators.
+        boolean new1 = false;
+        boolean new2 = false;
+
+        if (doCrossover) {
+            ArrayList<Chromosome> pair = crossover(p1, p2, random);
+            if (counters != null) time = counters.crossedOver(time, p1, p2, pair.get(0), pair.get(1));
+            p1 = pair.get(0);
+            p2 = pair.get(1);
+            new1 = true;
+            new2 = true;
+        }
+
+        Chromosome before;
+        if (doMutate1) {
+            before = p1;
+            p1 = mutate(p1, random);
+            if (counters != null) time = counters.mutated(time, before, p1);
+            new1 = discard(before, p1, new1);
+        }
+        if (doMutate2) {
+            before = p2;
+            p2 = mutate(p2, random);
+            if (counters != null) time = counters.mutated(time, before, p2);
+            new2 = discard(before, p2, new2);
+        }
+
+        if (doLocalSearch1) {
+            before = p1;
+            p1 = performLocalSearch(p1);
+            if (counters != null) time = counters.searched(time, before, p1);
+            new1 = discard(before, p1, new1);
+        }
+        if (doLocalSearch2) {
+            before = p2;
+            p2 = performLocalSearch(p2);
+            if (counters != null) time = counters.searched(time, before, p2);
+            new2 = discard(before, p2, new2);
+        }
+
+        p1.getDistance();
+        p2.getDistance();
+
+        children[index] = p1;
+        if (index + 1 < children.length) {
+            children[index + 1] = p2;
+        } else if (new2) {
+            TourPool.recycle(p2);
+            new2 = false;
+        }
+
+        return (new1 ? 1 : 0) | (new2 ? 2 : 0);
+    }
+
+    /**
+     * Gives the tour of a child back to the TourPool once an operator has
+     * turned the child into another Chromosome, if the child was new.
+     * @param before    the child before the operator
+     * @param after     the Chromosome the operator returned
+     * @param isNew     whether the child before the operator was new
+     * @return          whether the child after the operator is new
+     */
+    private static boolean discard (Chromosome before, Chromosome after, boolean isNew) {
+        if (after == before) {
+            return isNew;
+        }
+        if (isNew) {
+            TourPool.recycle(before);
+        }
+        return true;
+    }
+
+    /**
+     * Breeds a range of chunks of children, splitting the range in half
+     * until it is a single chunk so that idle threads can steal the rest.
+     */
+    private class BreedingTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Chromosome[] children;
+        private final boolean[] areNew;     // Whether each child is a new Chromosome.
+        private final Chromosome[] dropped; // To recycle before breeding, by index from offset, or null.
+        private final int offset;
+        private final int firstPick;    // The pick of the parents of the child at offset.
+        private final long[] chunkSeeds;
+        private final int from, to;
+
+        BreedingTask (Chromosome[] children, boolean[] areNew, Chromosome[] dropped, int offset,
+                      int firstPick, long[] chunkSeeds, int from, int to) {
+            this.children = children;
+            this.areNew = areNew;
+            this.dropped = dropped;
+            this.offset = offset;
+            this.firstPick = firstPick;
+            this.chunkSeeds = chunkSeeds;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute () {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new BreedingTask(children, areNew, dropped, offset, firstPick, chunkSeeds, from, middle),
+                        new BreedingTask(children, areNew, dropped, offset, firstPick, chunkSeeds, middle, to));
+                return;
+            }
+
+            Random chunkRandom = new Random(chunkSeeds[from]);
+            Metrics.Counters counters = (metrics != null) ? new Metrics.Counters() : null;
+            int start = offset + from * CHUNK_SIZE;
+            int end = Math.min(start + CHUNK_SIZE, children.length);
+            if (dropped != null) {
+                for (int i = start; i < end; i++) {
+                    if (dropped[i - offset] != null) {
+                        TourPool.recycle(dropped[i - offset]);
+                        dropped[i - offset] = null;
+                    }
+                }
+            }
+            for (int i = start; i < end; i += 2) {
+                int made = breed(chunkRandom, children, i, firstPick + i - offset, counters);
+                areNew[i] = (made & 1) != 0;
+                if (i + 1 < children.length) {
+                    areNew[i + 1] = (made & 2) != 0;
                 }
+            }
+            if (counters != null) {
+                metrics.add(counters);
+            }
+        }
+    }
+
+    /**
+     * Get the set used for finding duplicate children, emptied. The same
+     * set is reused every generation.
+     * @return  an empty ChromosomeSet
+     */
+    private ChromosomeSet getChromosomeSet () {
+        if (chromosomeSet == null) {
+            chromosomeSet = new ChromosomeSet(population.size());
+        }
+        chromosomeSet.clear();
+        return chromosomeSet;
+    }
 
+    private ForkJoinPool getPool () {
+        if (pool == null || pool.getParallelism() != threads) {
+            if (pool != null) {
+                pool.shutdown();
             }
+            pool = new ForkJoinPool(threads);
+        }
+        return pool;
+    }
+
+    /**
+     * Builds what the selection of the GeneticAlgorithm needs from the
+     * current population, once per generation before any parent is picked.
+     * @param random    the Random object for stochastic universal sampling
+     */
+    void prepareSelection (Random random) {
+        if (selectionType == SelectionType.ROULETTE) {
+            sampler.roulette(population);
+        } else if (selectionType == SelectionType.LINEAR_RANK) {
+            sampler.linearRank(population);
+        } else if (selectionType == SelectionType.STOCHASTIC_UNIVERSAL) {
+            sampler.stochasticUniversal(population, random);
         }
+    }
+
+    /**
+     * Pick a parent from the current population based on what type of
+     * selection is set.
+     * @param random    the Random object used by the selection
+     * @param pick      the number of the parent among the parents picked this
+     *                  generation, only used by stochastic universal sampling
+     * @return          the parent
+     */
+    Chromosome select (Random random, int pick) {
+        if (selectionType == SelectionType.ROULETTE || selectionType == SelectionType.LINEAR_RANK) {
+            return population.get(sampler.draw(random));
+        } else if (selectionType == SelectionType.STOCHASTIC_UNIVERSAL) {
+            return population.get(sampler.get(pick));
+        } else { // Default is tournament.
+            return Selection.tournamentSelection(population, k, random);
+        }
+    }
+
+    private void performElitism (Population nextGen) {
+
+        // Only the order of the current population changes, no copy of it is
+        // made, and only the elite are put in front rather than sorting it all.
+        population.moveMostFitToFront(elitismValue);
+
+        for (int i = 0; i < elitismValue; i++) {
+
+            Chromosome chromosome = population.get(i);
+
+            if (localSearchRate > 0) {
+                chromosome = performLocalSearch(chromosome);
+            }
+
+            //if (random.nextDouble() < localSearchRate)
+            //    chromosome = performLocalSearch(chromosome);
 
-        return new Chromosome(bestArray);
+            nextGen.add(chromosome);
+        }
     }
 
     /**
-     * Helper method for swapping two Cities in a Chromosome to change the tour.
-     * @param array     the array of Cities to do the swap in
-     * @param i         the index of the first City
-     * @param j         the index of the second City
+     * Improves a Chromosome with the LocalSearch of the GeneticAlgorithm.
+     * @param chromosome    the Chromosome to improve
+     * @return              the improved Chromosome
      */
-    private static void swap (City[] array, int i, int j) {
-        City temp = array[i];
-        array[i] = array[j];
-        array[j] = temp;
+    private Chromosome performLocalSearch (Chromosome chromosome) {
+        return localSearch.improve(chromosome);
     }
 
     /**
      * Mutate the Chromosome based on what type is selected.
      * @param chromosome    the Chromosome to mutate
+     * @param random        the Random object used by the mutation
      * @return              the mutated Chromosome
      */
-    private Chromosome mutate (Chromosome chromosome) {
+    Chromosome mutate (Chromosome chromosome, Random random) {
         if (mutationType == MutationType.INSERTION) {
             return Mutation.insertion(chromosome, random);
         } else if (mutationType == MutationType.RECIPROCAL_EXCHANGE) {
             return Mutation.reciprocalExchange(chromosome, random);
         } else if (mutationType == MutationType.SCRAMBLE) {
             return Mutation.scrambleMutation(chromosome, random);
+        } else if (mutationType == MutationType.TWO_OPT) {
+            return Mutation.twoOpt(chromosome, random);
+        } else if (mutationType == MutationType.OR_OPT) {
+            return Mutation.orOpt(chromosome, random);
+        } else if (mutationType == MutationType.DOUBLE_BRIDGE) {
+            return Mutation.doubleBridge(chromosome, random);
         } else { // Default is insertion.
             return Mutation.insertion(chromosome, random);
         }
@@ -427,14 +1239,21 @@ public class GeneticAlgorithm {
      * Perform the selected type of crossover.
      * @param p1            the first parent
      * @param p2            the second parent
+     * @param random        the Random object used by the crossover
      * @return              the children
      */
-    private ArrayList<Chromosome> crossover (Chromosome p1, Chromosome p2) {
+    ArrayList<Chromosome> crossover (Chromosome p1, Chromosome p2, Random random) {
         ArrayList<Chromosome> children;
         if (crossoverType == CrossoverType.UNIFORM_ORDER) {
             children = Crossover.uniformOrder(p1, p2, random);
         } else if (crossoverType == CrossoverType.ONE_POINT) {
             children = Crossover.onePointCrossover(p1, p2, random);
+        } else if (crossoverType == CrossoverType.EDGE_RECOMBINATION) {
+            children = Crossover.edgeRecombination(p1, p2, random);
+        } else if (crossoverType == CrossoverType.PARTIALLY_MAPPED) {
+            children = Crossover.partiallyMapped(p1, p2, random);
+        } else if (crossoverType == CrossoverType.CYCLE) {
+            children = Crossover.cycleCrossover(p1, p2, random);
         } else {
             children = Crossover.orderCrossover(p1, p2, random);
         }
@@ -449,30 +1268,204 @@ public class GeneticAlgorithm {
         }
     }
 
+    public enum ReplacementType {
+        WORST,
+        TOURNAMENT_LOSER
+    }
+
+    public enum SelectionType {
+        TOURNAMENT,
+        ROULETTE,
+        LINEAR_RANK,
+        STOCHASTIC_UNIVERSAL
+    }
+
     public enum MutationType {
         INSERTION,
         RECIPROCAL_EXCHANGE,
-        SCRAMBLE
+        SCRAMBLE,
+        TWO_OPT,
+        OR_OPT,
+        DOUBLE_BRIDGE
     }
 
     public enum CrossoverType {
         UNIFORM_ORDER,
         ONE_POINT,
-        TWO_POINT
+        TWO_POINT,
+        EDGE_RECOMBINATION,
+        PARTIALLY_MAPPED,
+        CYCLE
     }
 
     public void reset () {
         population = initialPop.deepCopy();
-        averageDistanceOfEachGeneration = new ArrayList<>();
-        bestDistanceOfEachGeneration = new ArrayList<>();
+        generation = 0;
+        bestDistanceSoFar = bestDistanceOfFirstGeneration;
+        lastImprovement = 0;
+        averageDistanceOfEachGeneration = new History(HISTORY_CAPACITY);
+        bestDistanceOfEachGeneration = new History(HISTORY_CAPACITY);
         areaUnderAverageDistances = 0;
         areaUnderBestDistances = 0;
         finished = false;
     }
 
+    /**
+     * Save a checkpoint of the run every few generations, from which the run
+     * can be resumed with resume(). The checkpoints are written on another
+     * thread, so the generations go on while a checkpoint is being written,
+     * and each one replaces the one before it.
+     * @param file      the file to save the checkpoints to, or null to stop saving them
+     * @param interval  the number of generations between two checkpoints
+     */
+    public void setCheckpoint (File file, int interval) {
+        if (interval < 1) {
+            throw new IllegalArgumentException("Parameter must be greater than 0.");
+        }
+        this.checkpointFile = file;
+        this.checkpointInterval = interval;
+    }
+
+    /**
+     * Save a checkpoint of the run right away, on this thread.
+     * @param file  the file to save the checkpoint to
+     * @throws IOException  if the file can not be written
+     */
+    public void saveCheckpoint (File file) throws IOException {
+        waitForCheckpoint();
+        createCheckpoint().write(file);
+    }
+
+    /**
+     * Carry on a run from a checkpoint. The parameters, the population, the
+     * Random object and the results so far are all replaced by the ones of
+     * the checkpoint, so that calling run() afterwards gives exactly the same
+     * results as the run that saved the checkpoint would have. The population
+     * must already be set to one with the same cities (the cities are not
+     * saved), and the LocalSearch and the number of threads are not changed.
+     * @param file  the checkpoint to resume from
+     * @throws IOException  if the file can not be read
+     */
+    public void resume (File file) throws IOException {
+        Checkpoint checkpoint = Checkpoint.read(file, population.getCityTable());
+
+        maxGen = checkpoint.maxGen;
+        k = checkpoint.k;
+        elitismValue = checkpoint.elitismValue;
+        crossoverRate = checkpoint.crossoverRate;
+        mutationRate = checkpoint.mutationRate;
+        localSearchRate = checkpoint.localSearchRate;
+        forceUniqueness = checkpoint.forceUniqueness;
+        crossoverType = checkpoint.crossoverType;
+        mutationType = checkpoint.mutationType;
+        selectionType = checkpoint.selectionType;
+        childrenPerStep = checkpoint.childrenPerStep;
+        replacementType = checkpoint.replacementType;
+
+        generation = checkpoint.generation;
+        random = checkpoint.loadRandom();
+        population = checkpoint.loadPopulation();
+
+        averageDistanceOfFirstGeneration = checkpoint.averageDistanceOfFirstGeneration;
+        bestDistanceOfFirstGeneration = checkpoint.bestDistanceOfFirstGeneration;
+        averageDistanceOfEachGeneration = checkpoint.averageDistanceOfEachGeneration;
+        bestDistanceOfEachGeneration = checkpoint.bestDistanceOfEachGeneration;
+        areaUnderAverageDistances = checkpoint.areaUnderAverageDistances;
+        areaUnderBestDistances = checkpoint.areaUnderBestDistances;
+        bestDistanceSoFar = checkpoint.bestDistanceSoFar;
+        lastImprovement = checkpoint.lastImprovement;
+        finished = false;
+    }
+
+    /**
+     * Takes a snapshot of the run. Only references and numbers are copied,
+     * the Chromosomes themselves are never changed and can be shared.
+     * @return  the checkpoint of the current generation
+     */
+    private Checkpoint createCheckpoint () {
+        Checkpoint checkpoint = new Checkpoint();
+        checkpoint.maxGen = maxGen;
+        checkpoint.k = k;
+        checkpoint.elitismValue = elitismValue;
+        checkpoint.crossoverRate = crossoverRate;
+        checkpoint.mutationRate = mutationRate;
+        checkpoint.localSearchRate = localSearchRate;
+        checkpoint.forceUniqueness = forceUniqueness;
+        checkpoint.crossoverType = crossoverType;
+        checkpoint.mutationType = mutationType;
+        checkpoint.selectionType = selectionType;
+        checkpoint.childrenPerStep = childrenPerStep;
+        checkpoint.replacementType = replacementType;
+
+        checkpoint.generation = generation;
+        checkpoint.random = Checkpoint.saveRandom(random);
+        checkpoint.chromosomes = population.getChromosomes();
+        checkpoint.populationSize = population.size();
+
+        checkpoint.averageDistanceOfFirstGeneration = averageDistanceOfFirstGeneration;
+        checkpoint.bestDistanceOfFirstGeneration = bestDistanceOfFirstGeneration;
+        checkpoint.averageDistanceOfEachGeneration = averageDistanceOfEachGeneration.copy();
+        checkpoint.bestDistanceOfEachGeneration = bestDistanceOfEachGeneration.copy();
+        checkpoint.areaUnderAverageDistances = areaUnderAverageDistances;
+        checkpoint.areaUnderBestDistances = areaUnderBestDistances;
+        checkpoint.bestDistanceSoFar = bestDistanceSoFar;
+        checkpoint.lastImprovement = lastImprovement;
+        return checkpoint;
+    }
+
+    /**
+     * Starts writing a checkpoint if one is due after this generation. If
+     * the last checkpoint is still being written, waits for it first.
+     */
+    void checkpointIfDue () {
+        if (checkpointFile == null || generation % checkpointInterval != 0) {
+            return;
+        }
+
+        waitForCheckpoint();
+
+        if (checkpointWriter == null) {
+            checkpointWriter = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "Checkpoint writer");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        Checkpoint checkpoint = createCheckpoint();
+        File file = checkpointFile;
+        pendingCheckpoint = checkpointWriter.submit(() -> {
+            checkpoint.write(file);
+            return null;
+        });
+    }
+
+    /**
+     * Waits until the checkpoint being written, if any, is on the disk.
+     */
+    private void waitForCheckpoint () {
+        if (pendingCheckpoint == null) {
+            return;
+        }
+        try {
+            pendingCheckpoint.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while saving a checkpoint.", ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException) {
+                throw new UncheckedIOException((IOException)cause);
+            }
+            throw new IllegalStateException("Could not save a checkpoint.", cause);
+        } finally {
+            pendingCheckpoint = null;
+        }
+    }
+
     public void printProperties () {
         System.out.println("----------Genetic Algorithm Properties----------");
-        System.out.println("Number of Cities:   " + population.getMostFit().getArray().length);
+        System.out.println("Number of Cities:   " + population.getMostFit().size());
         System.out.println("Population Size:    " + population.size());
         System.out.println("Max. Generation:    " + maxGen);
         System.out.println("k Value:            " + k);
@@ -483,6 +1476,7 @@ public class GeneticAlgorithm {
         System.out.println("Crossover Rate:     " + (crossoverRate*100) + "%");
         System.out.println("Mutation Type:      " + mutationType);
         System.out.println("Mutation Rate:      " + (mutationRate*100) + "%");
+        System.out.println("Threads:            " + threads);
     }
 
     public void printResults () {
@@ -504,6 +1498,8 @@ public class GeneticAlgorithm {
                 getAreaUnderAverageDistances());
         System.out.println("Area Under Average Distance:           " +
                 getAreaUnderBestDistances());
+        System.out.println("Generations Run:                       " + generation);
+        System.out.println("Stop Reason:                           " + stopReason);
     }
 
 }
\ No newline at end of file
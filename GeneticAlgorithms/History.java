@@ -0,0 +1,154 @@
+package GeneticAlgorithms;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * A record of one int value per generation that never holds more than a
+ * fixed number of values. Until it is full every value is kept. Once full,
+ * every other value is dropped and from then on only every second value
+ * added is kept, and so on, so the record always covers the whole run at an
+ * even spacing. The values are kept in a primitive array that only grows
+ * (by doubling) until it reaches the capacity, so adding a value does not
+ * allocate anything.
+ */
+public class History {
+
+    private int[] values;
+    private int size;       // Values kept.
+    private int capacity;   // The most values kept, always even.
+    private int stride;     // Values added for every value kept.
+    private long added;     // Values added in total.
+
+    /**
+     * Construct an empty History.
+     * @param capacity  the most values to keep, rounded up to an even number
+     */
+    public History (int capacity) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("Parameter must be at least 2.");
+        }
+        this.capacity = capacity + (capacity & 1);
+        values = new int[Math.min(this.capacity, 64)];
+        stride = 1;
+    }
+
+    /**
+     * Add the value of the next generation.
+     * @param value     the value
+     */
+    public void add (int value) {
+        if (added % stride == 0) {
+            if (size == capacity) {
+                for (int i = 0; i < size / 2; i++) {
+                    values[i] = values[2 * i];
+                }
+                size /= 2;
+                stride *= 2;
+            }
+            if (added % stride == 0) {
+                if (size == values.length) {
+                    values = Arrays.copyOf(values, Math.min(capacity, values.length * 2));
+                }
+                values[size++] = value;
+            }
+        }
+        added++;
+    }
+
+    /**
+     * Get a value that was kept.
+     * @param index     the index, from 0 to size()-1
+     * @return          the value
+     */
+    public int get (int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return values[index];
+    }
+
+    /**
+     * Get which of the values added a kept value was. The first value added
+     * is 0, so for a record of generations it is the generation minus 1.
+     * @param index     the index of the kept value, from 0 to size()-1
+     * @return          the number of values added before it
+     */
+    public long getPosition (int index) {
+        return (long)index * stride;
+    }
+
+    /**
+     * Get the number of values kept.
+     * @return  the number of values that can be read with get
+     */
+    public int size () {
+        return size;
+    }
+
+    /**
+     * Get the number of values added, including the ones that were dropped.
+     * @return  the total number of values added
+     */
+    public long getTotal () {
+        return added;
+    }
+
+    /**
+     * Get the number of values added for every value kept.
+     * @return  1 until the History has been full
+     */
+    public int getStride () {
+        return stride;
+    }
+
+    public int getCapacity () {
+        return capacity;
+    }
+
+    /**
+     * Get the kept values as a list, for example for WindowGraph.
+     * @return  a new list of the kept values
+     */
+    public ArrayList<Integer> toList () {
+        ArrayList<Integer> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(values[i]);
+        }
+        return list;
+    }
+
+    /**
+     * Get a copy that does not change when this one does.
+     * @return  the copy
+     */
+    public History copy () {
+        History copy = new History(capacity);
+        copy.values = Arrays.copyOf(values, Math.max(size, 1));
+        copy.size = size;
+        copy.stride = stride;
+        copy.added = added;
+        return copy;
+    }
+
+    /**
+     * Rebuild a History from its state, as saved in a checkpoint.
+     * @param capacity  the capacity
+     * @param stride    the stride
+     * @param added     the total number of values added
+     * @param values    the kept values
+     * @return          the History
+     */
+    static History restore (int capacity, int stride, long added, int[] values) {
+        History history = new History(capacity);
+        if (values.length > history.capacity || stride < 1) {
+            throw new IllegalArgumentException("The History is not valid.");
+        }
+        history.values = Arrays.copyOf(values, Math.max(values.length, 1));
+        history.size = values.length;
+        history.stride = stride;
+        history.added = added;
+        return history;
+    }
+
+}
@@ -0,0 +1,284 @@
+package GeneticAlgorithms;
+
+import GeneticObjects.Chromosome;
+import GeneticObjects.ChromosomeSet;
+import GeneticObjects.Population;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs several GeneticAlgorithms (islands) at the same time, each on its own
+ * thread, and now and then sends the fittest Chromosomes of each island to
+ * other islands. Each island keeps its own Random object and operator
+ * settings, so the islands can search in different ways.
+ * <br/>
+ * A migrant is not copied: the same Chromosome object ends up in the
+ * populations of several islands. This is safe because a Chromosome is
+ * immutable, and because the tour of a Chromosome that was ever in a
+ * Population is never given back to the TourPool (see TourPool), so no
+ * island can overwrite a tour that another island still holds.
+ * <br/>
+ * The islands never wait for each other. Migrants are put in a lock-free
+ * queue of the island they are sent to, and an island takes in whatever is
+ * waiting in its queue after each of its generations, replacing its least
+ * fit Chromosomes. Because of this, a run with more than one island is not
+ * exactly reproducible from the seeds alone, since the generation at which
+ * migrants arrive depends on the speed of the threads.
+ * <br/>
+ * Each island should breed on a single thread (the default), as the
+ * islands already use one thread each. An island stops at its maxGen or
+ * when one of its termination criteria is met.
+ */
+public class IslandModel {
+
+    private ArrayList<GeneticAlgorithm> islands;
+    private int migrationInterval;  // Generations between two migrations.
+    private int migrationSize;      // Chromosomes sent by an island per migration.
+    private Topology topology;
+
+    private boolean finished;
+
+    /**
+     * Construct the IslandModel with no islands and default values: one
+     * Chromosome migrates every 10 generations, along a ring.
+     */
+    public IslandModel () {
+        islands = new ArrayList<>();
+        migrationInterval = 10;
+        migrationSize = 1;
+        topology = Topology.RING;
+        finished = false;
+    }
+
+    /**
+     * Add an island. The GeneticAlgorithm should already be set up with its
+     * population and parameters, its maxGen is the most generations the
+     * island runs for.
+     * @param geneticAlgorithm  the island
+     */
+    public void addIsland (GeneticAlgorithm geneticAlgorithm) {
+        if (geneticAlgorithm == null) {
+            throw new IllegalArgumentException("Parameter cannot be null.");
+        }
+        islands.add(geneticAlgorithm);
+    }
+
+    public void setMigrationInterval (int migrationInterval) {
+        if (migrationInterval < 1) {
+            throw new IllegalArgumentException("Parameter must be greater than 0.");
+        }
+        this.migrationInterval = migrationInterval;
+    }
+
+    public void setMigrationSize (int migrationSize) {
+        if (migrationSize < 0) {
+            throw new IllegalArgumentException("Parameter cannot be negative.");
+        }
+        this.migrationSize = migrationSize;
+    }
+
+    public void setTopology (Topology topology) {
+        if (topology == null) {
+            throw new IllegalArgumentException("Parameter cannot be null.");
+        }
+        this.topology = topology;
+    }
+
+    public int getNumberOfIslands () {
+        return islands.size();
+    }
+
+    public GeneticAlgorithm getIsland (int index) {
+        return islands.get(index);
+    }
+
+    /**
+     * Run all the islands until each has run for its number of generations.
+     * Blocks until they are all done.
+     */
+    public void run () {
+        if (islands.isEmpty()) {
+            throw new IllegalStateException("There are no islands to run.");
+        }
+
+        ArrayList<ConcurrentLinkedQueue<Chromosome>> inboxes = new ArrayList<>();
+        for (int i = 0; i < islands.size(); i++) {
+            inboxes.add(new ConcurrentLinkedQueue<>());
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(islands.size());
+        try {
+            ArrayList<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < islands.size(); i++) {
+                int island = i;
+                futures.add(executor.submit(() -> runIsland(island, inboxes)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while the islands were running.", ex);
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException("An island failed.", ex.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        finished = true;
+    }
+
+    /**
+     * Runs a single island, on the thread of the island.
+     * @param island    the index of the island
+     * @param inboxes   the queues of migrants waiting to join each island
+     */
+    private void runIsland (int island, ArrayList<ConcurrentLinkedQueue<Chromosome>> inboxes) {
+        GeneticAlgorithm geneticAlgorithm = islands.get(island);
+
+        geneticAlgorithm.start();
+        while (!geneticAlgorithm.shouldStop()) {
+            geneticAlgorithm.nextGeneration();
+            immigrate(geneticAlgorithm, inboxes.get(island));
+
+            int generation = geneticAlgorithm.getGeneration();
+            if (generation % migrationInterval == 0 && islands.size() > 1 && migrationSize > 0) {
+                emigrate(island, geneticAlgorithm, inboxes);
+            }
+        }
+
+        geneticAlgorithm.finish();
+    }
+
+    /**
+     * Sends the fittest Chromosomes of an island, not copies of them, to the
+     * islands that the topology connects it to.
+     * @param island            the index of the island sending the migrants
+     * @param geneticAlgorithm  the island sending the migrants
+     * @param inboxes           the queues of migrants waiting to join each island
+     */
+    private void emigrate (int island, GeneticAlgorithm geneticAlgorithm,
+                           ArrayList<ConcurrentLinkedQueue<Chromosome>> inboxes) {
+        Population population = geneticAlgorithm.getPopulation();
+        int count = Math.min(migrationSize, population.size());
+        population.moveMostFitToFront(count);
+
+        for (int i = 0; i < count; i++) {
+            Chromosome migrant = population.get(i);
+
+            // Work out the cached values once here, rather than on every island it is sent to.
+            migrant.getLength();
+            migrant.getFingerprint();
+
+            if (topology == Topology.RING) {
+                inboxes.get((island + 1) % islands.size()).offer(migrant);
+            } else if (topology == Topology.FULLY_CONNECTED) {
+                for (int other = 0; other < islands.size(); other++) {
+                    if (other != island) {
+                        inboxes.get(other).offer(migrant);
+                    }
+                }
+            } else {
+                Random random = geneticAlgorithm.getRandom();
+                int other = random.nextInt(islands.size() - 1);
+                inboxes.get((other >= island) ? other + 1 : other).offer(migrant);
+            }
+        }
+    }
+
+    /**
+     * Takes in the migrants waiting for an island. Each one replaces the
+     * least fit Chromosome not yet replaced, if it is fitter than it. At most
+     * half the population is replaced at once. If the island forces
+     * uniqueness, a migrant that is already in the population is turned
+     * away, since islands keep sending their fittest Chromosomes, which
+     * often have not changed since the last migration.
+     * @param geneticAlgorithm  the island taking in the migrants
+     * @param inbox             the migrants waiting to join the island
+     */
+    private static void immigrate (GeneticAlgorithm geneticAlgorithm, ConcurrentLinkedQueue<Chromosome> inbox) {
+        if (inbox.isEmpty()) {
+            return;
+        }
+
+        Population population = geneticAlgorithm.getPopulation();
+        population.sort();
+
+        ChromosomeSet members = null;
+        if (geneticAlgorithm.isForcingUniqueness()) {
+            members = new ChromosomeSet(population.size());
+            for (Chromosome chromosome : population) {
+                members.add(chromosome);
+            }
+        }
+
+        int replaced = 0;
+        Chromosome migrant;
+
+        while ((migrant = inbox.poll()) != null) {
+            int index = population.size() - 1 - replaced;
+            if (replaced < population.size() / 2 && migrant.getLength() < population.get(index).getLength()) {
+                if (members != null) {
+                    if (members.contains(migrant)) {
+                        continue;
+                    }
+                    members.remove(population.get(index));
+                    members.add(migrant);
+                }
+                population.set(index, migrant);
+                replaced++;
+            }
+        }
+    }
+
+    /**
+     * Get the fittest Chromosome of all the islands.
+     * @return  the fittest Chromosome found
+     */
+    public Chromosome getMostFit () {
+        if (!finished) {
+            throw new IllegalArgumentException("Island model was never run.");
+        }
+        Chromosome mostFit = null;
+        for (GeneticAlgorithm island : islands) {
+            Chromosome chromosome = island.getPopulation().getMostFit();
+            if (mostFit == null || chromosome.getLength() < mostFit.getLength()) {
+                mostFit = chromosome;
+            }
+        }
+        return mostFit;
+    }
+
+    public void printProperties () {
+        System.out.println("-------------Island Model Properties-------------");
+        System.out.println("Number of Islands:  " + islands.size());
+        System.out.println("Topology:           " + topology);
+        System.out.println("Migration Interval: " + migrationInterval);
+        System.out.println("Migration Size:     " + migrationSize);
+    }
+
+    public void printResults () {
+        if (!finished) {
+            throw new IllegalArgumentException("Island model was never run.");
+        }
+        System.out.println("--------------Island Model Results---------------");
+        for (int i = 0; i < islands.size(); i++) {
+            System.out.println("Best Distance of Island " + (i + 1) + ":  " +
+                    islands.get(i).getBestDistanceOfLastGeneration());
+        }
+        System.out.println("Best Distance of All Islands: " + getMostFit().getDistance());
+    }
+
+    public enum Topology {
+        RING,               // Each island sends to the next one.
+        FULLY_CONNECTED,    // Each island sends to every other island.
+        RANDOM              // Each island sends to a random other island every time.
+    }
+
+}
@@ -0,0 +1,395 @@
+package GeneticAlgorithms;
+
+import GeneticObjects.Chromosome;
+import GeneticObjects.CityTable;
+import GeneticObjects.NeighborLists;
+import GeneticObjects.TourPool;
+
+import java.util.Arrays;
+
+/**
+ * Improves tours with 2-opt and Or-opt moves. Only moves that connect a city
+ * to one of its nearest neighbors are tried, and a city is only looked at
+ * again once one of its edges has changed (its "don't look bit" is cleared),
+ * so a pass costs about n * k distance lookups instead of n * n. Moves are
+ * made in place on a single copy of the tour.
+ * <br/>
+ * The search stops at a local optimum, or earlier if the number of moves or
+ * the time spent reaches the budget.
+ */
+public class LocalSearch {
+
+    private int neighbors;      // Number of nearest neighbors tried per city.
+    private int maxMoves;       // Most improving moves made per tour.
+    private long timeLimit;     // Most nanoseconds spent per tour, 0 for no limit.
+    private boolean orOpt;      // If true, segments of up to 3 cities are also moved.
+
+    // The clock is only read once per this many cities looked at.
+    private static final int CLOCK_INTERVAL = 256;
+
+    // The working arrays of the searches, one set per thread. The tour being
+    // improved comes from the TourPool.
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    /**
+     * Construct the LocalSearch with default values: 10 neighbors, Or-opt
+     * enabled and no budget.
+     */
+    public LocalSearch () {
+        neighbors = 10;
+        maxMoves = Integer.MAX_VALUE;
+        timeLimit = 0;
+        orOpt = true;
+    }
+
+    public void setNeighbors (int neighbors) {
+        if (neighbors < 1) {
+            throw new IllegalArgumentException("Parameter must be greater than 0.");
+        }
+        this.neighbors = neighbors;
+    }
+
+    public void setMaxMoves (int maxMoves) {
+        if (maxMoves < 0) {
+            throw new IllegalArgumentException("Parameter cannot be negative.");
+        }
+        this.maxMoves = maxMoves;
+    }
+
+    /**
+     * Set the time budget for improving a single tour.
+     * @param milliseconds  the time limit, 0 for no limit
+     */
+    public void setTimeLimit (long milliseconds) {
+        if (milliseconds < 0) {
+            throw new IllegalArgumentException("Parameter cannot be negative.");
+        }
+        this.timeLimit = milliseconds * 1_000_000L;
+    }
+
+    public void setOrOpt (boolean orOpt) {
+        this.orOpt = orOpt;
+    }
+
+    public int getNeighbors () {
+        return neighbors;
+    }
+
+    public int getMaxMoves () {
+        return maxMoves;
+    }
+
+    public boolean isOrOptEnabled () {
+        return orOpt;
+    }
+
+    /**
+     * Improve a tour. Safe to call from several threads at once.
+     * @param chromosome    the Chromosome to improve
+     * @return              the improved Chromosome (or the same one if no move helps)
+     */
+    public Chromosome improve (Chromosome chromosome) {
+
+        // Every tour through 4 cities or less is already as short as 2-opt can make it.
+        if (chromosome.size() < 5 || maxMoves == 0) {
+            return chromosome;
+        }
+
+        Search search = new Search(chromosome);
+        search.run();
+
+        if (search.totalGain == 0) {
+            TourPool.give(search.tour);
+            return chromosome;
+        }
+        return chromosome.derive(search.tour, -search.totalGain, search.fingerprintChange);
+    }
+
+    /**
+     * The state of the search on one tour.
+     */
+    private class Search {
+
+        private final CityTable table;
+        private final NeighborLists lists;
+        private final int k;
+        private final int n;
+        private final int[] tour;       // The city at each position.
+        private final int[] position;   // The position of each city.
+
+        // Cities waiting to be looked at. A city not in the queue has its don't look bit set.
+        private final int[] queue;
+        private final boolean[] inQueue;
+        private int head, queueSize;
+
+        private double totalGain;
+        private long fingerprintChange;     // For Chromosome.derive.
+
+        Search (Chromosome chromosome) {
+            table = chromosome.getCityTable();
+            n = chromosome.size();
+            lists = table.getNeighborLists(neighbors);
+            k = Math.min(neighbors, lists.getK());
+            tour = TourPool.copyTour(chromosome);
+            Scratch scratch = SCRATCH.get().reset(n);
+            position = scratch.position;
+            queue = scratch.queue;
+            inQueue = scratch.inQueue;
+
+            for (int i = 0; i < n; i++) {
+                position[tour[i]] = i;
+                push(tour[i]);
+            }
+        }
+
+        void run () {
+            long deadline = System.nanoTime() + timeLimit;
+            int moves = 0;
+            int looked = 0;
+
+            while (queueSize > 0 && moves < maxMoves) {
+
+                if (timeLimit > 0 && ++looked % CLOCK_INTERVAL == 0 && System.nanoTime() > deadline) {
+                    return;
+                }
+
+                int city = pop();
+                if (improveTwoOpt(city) || (orOpt && improveOrOpt(city))) {
+                    moves++;
+                    push(city);
+                }
+            }
+        }
+
+        /**
+         * Tries to replace an edge of a city with an edge to one of its
+         * neighbors, reconnecting the tour with a 2-opt move.
+         * @param a     the city
+         * @return      true if a move was made
+         */
+        private boolean improveTwoOpt (int a) {
+
+            for (int direction = 0; direction < 2; direction++) {
+
+                int b = (direction == 0) ? next(a) : previous(a);
+                double removed = distance(a, b);
+
+                for (int i = 0; i < k; i++) {
+                    int c = lists.get(a, i);
+                    double partialGain = removed - distance(a, c);
+
+                    // The neighbors are sorted, so no later one can help either.
+                    if (partialGain <= 0) {
+                        break;
+                    }
+
+                    int d = (direction == 0) ? next(c) : previous(c);
+                    if (c == b || d == a) {
+                        continue;
+                    }
+
+                    double gain = partialGain + distance(c, d) - distance(b, d);
+                    if (gain > 0) {
+                        makeTwoOptMove(a, b, c, d);
+                        totalGain += gain;
+                        push(b);
+                        push(c);
+                        push(d);
+                        return true;
+                    }
+                }
+            }
+
+            return false;
+        }
+
+        /**
+         * Tries to move the segment of 1 to 3 cities starting at a city in
+         * between two other cities, next to a neighbor of one of its ends.
+         * The segment may be reversed when it is moved.
+         * @param s1    the first city of the segment
+         * @return      true if a move was made
+         */
+        private boolean improveOrOpt (int s1) {
+
+            for (int length = 1; length <= 3 && length + 4 <= n; length++) {
+
+                int s2 = s1;
+                for (int i = 1; i < length; i++) {
+                    s2 = next(s2);
+                }
+                int middle = (length == 3) ? next(s1) : s1;
+                int p = previous(s1);
+                int nx = next(s2);
+
+                double removed = distance(p, s1) + distance(s2, nx) - distance(p, nx);
+                if (removed <= 0) {
+                    continue;
+                }
+
+                for (int end = 0; end < 2; end++) {
+                    int s = (end == 0) ? s1 : s2;
+
+                    for (int i = 0; i < k; i++) {
+                        int c = lists.get(s, i);
+                        if (distance(s, c) >= removed) {
+                            break;
+                        }
+                        if (c == s1 || c == middle || c == s2) {
+                            continue;
+                        }
+
+                        // Try the edges on both sides of the neighbor.
+                        for (int side = 0; side < 2; side++) {
+                            int e = (side == 0) ? c : previous(c);
+                            int f = (side == 0) ? next(c) : c;
+                            if (e == s1 || e == middle || e == s2 || f == s1 || f == middle || f == s2) {
+                                continue;
+                            }
+
+                            double joined = distance(e, f);
+                            double forward = distance(e, s1) + distance(s2, f) - joined;
+                            double reversed = distance(e, s2) + distance(s1, f) - joined;
+                            boolean reverse = reversed < forward;
+                            double gain = removed - (reverse ? reversed : forward);
+
+                            if (gain > 0) {
+                                makeOrOptMove(s1, s2, p, nx, e, f, reverse || length == 1);
+                                totalGain += gain;
+                                push(s2);
+                                push(p);
+                                push(nx);
+                                push(e);
+                                push(f);
+                                return true;
+                            }
+                        }
+                    }
+                }
+            }
+
+            return false;
+        }
+
+        /**
+         * Moves the segment s1..s2 (which lies between p and nx) in between
+         * the edge from e to f, as a sequence of 2-opt moves.
+         */
+        private void makeOrOptMove (int s1, int s2, int p, int nx, int e, int f, boolean reverse) {
+
+            // Put the segment in between e and f, reversed, and join p to nx.
+            if (f == p) {
+                makeTwoOptMove(e, p, s2, nx);
+            } else if (e == nx) {
+                makeTwoOptMove(p, s1, nx, f);
+            } else {
+                makeTwoOptMove(p, s1, e, f);
+                makeTwoOptMove(p, e, nx, s2);
+            }
+
+            // Turn the segment back around.
+            if (!reverse) {
+                makeTwoOptMove(e, s2, s1, f);
+            }
+        }
+
+        /**
+         * Replaces the edges a-b and c-d with a-c and b-d. Either b follows a
+         * and d follows c, or b comes before a and d comes before c.
+         */
+        private void makeTwoOptMove (int a, int b, int c, int d) {
+            fingerprintChange += Chromosome.edgeFingerprint(a, c) + Chromosome.edgeFingerprint(b, d)
+                    - Chromosome.edgeFingerprint(a, b) - Chromosome.edgeFingerprint(c, d);
+            if (next(a) == b) {
+                reversePath(b, c);
+            } else {
+                reversePath(a, d);
+            }
+        }
+
+        /**
+         * Reverses the cities from one city forward to another. Reversing
+         * the rest of the tour instead gives the same tour, so the shorter
+         * of the two is reversed.
+         */
+        private void reversePath (int from, int to) {
+            int i = position[from];
+            int j = position[to];
+            int length = (j - i + n) % n + 1;
+
+            if (length * 2 > n) {
+                int start = (j + 1) % n;
+                j = (i - 1 + n) % n;
+                i = start;
+                length = n - length;
+            }
+
+            for (int swaps = length / 2; swaps > 0; swaps--) {
+                int cityI = tour[i];
+                int cityJ = tour[j];
+                tour[i] = cityJ;
+                tour[j] = cityI;
+                position[cityJ] = i;
+                position[cityI] = j;
+                i = (i + 1 == n) ? 0 : i + 1;
+                j = (j == 0) ? n - 1 : j - 1;
+            }
+        }
+
+        private int next (int city) {
+            int i = position[city] + 1;
+            return tour[(i == n) ? 0 : i];
+        }
+
+        private int previous (int city) {
+            int i = position[city];
+            return tour[(i == 0) ? n - 1 : i - 1];
+        }
+
+        private double distance (int a, int b) {
+            return table.distance(a, b);
+        }
+
+        private void push (int city) {
+            if (!inQueue[city]) {
+                inQueue[city] = true;
+                queue[(head + queueSize++) % n] = city;
+            }
+        }
+
+        private int pop () {
+            int city = queue[head];
+            head = (head + 1) % n;
+            queueSize--;
+            inQueue[city] = false;
+            return city;
+        }
+    }
+
+    /**
+     * The working arrays of the searches of one thread. They grow to the
+     * largest tour seen and are then reused by every search.
+     */
+    private static class Scratch {
+
+        private int[] position = new int[0];
+        private int[] queue = new int[0];
+        private boolean[] inQueue = new boolean[0];
+
+        /**
+         * Makes the arrays big enough for a tour and empties the queue.
+         */
+        Scratch reset (int size) {
+            if (position.length < size) {
+                position = new int[size];
+                queue = new int[size];
+                inQueue = new boolean[size];
+            } else {
+                // A search that ran out of budget leaves cities in the queue.
+                Arrays.fill(inQueue, 0, size, false);
+            }
+            return this;
+        }
+    }
+
+}
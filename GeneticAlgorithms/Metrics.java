@@ -0,0 +1,350 @@
+package GeneticAlgorithms;
+
+import GeneticObjects.Chromosome;
+import GeneticObjects.Population;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Detailed measurements of the last generations of a run, for tuning the
+ * parameters without a window: the best and mean length and the diversity
+ * of each generation, how often each operator made a tour shorter, and how
+ * long each phase of breeding took.
+ * <br/>
+ * A GeneticAlgorithm only collects metrics once it is given a Metrics
+ * object (see GeneticAlgorithm.setMetrics). Without one, breeding is not
+ * timed or measured at all. The values of each generation are kept in
+ * primitive ring buffers, so only the last generations are kept (as many as
+ * the capacity) and recording a generation does not allocate anything.
+ * <br/>
+ * The times of the phases are added up over all the breeding threads, and
+ * the operator counts are of the bred children (not the elite).
+ */
+public class Metrics {
+
+    private final int capacity;
+    private long recorded;      // Generations recorded in total.
+
+    // One slot per generation, the newest at (recorded - 1) % capacity.
+    private final int[] generation;
+    private final double[] best;
+    private final double[] mean;
+    private final double[] diversity;
+    private final int[] crossovers;
+    private final int[] improvingCrossovers;
+    private final int[] mutations;
+    private final int[] improvingMutations;
+    private final int[] localSearches;
+    private final int[] improvingLocalSearches;
+    private final long[] selectionTime;
+    private final long[] crossoverTime;
+    private final long[] mutationTime;
+    private final long[] localSearchTime;
+    private final long[] generationTime;
+
+    private final Counters current;     // Of the generation being bred.
+
+    /**
+     * Construct the Metrics.
+     * @param capacity  the number of generations to keep
+     */
+    public Metrics (int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Parameter must be greater than 0.");
+        }
+        this.capacity = capacity;
+        generation = new int[capacity];
+        best = new double[capacity];
+        mean = new double[capacity];
+        diversity = new double[capacity];
+        crossovers = new int[capacity];
+        improvingCrossovers = new int[capacity];
+        mutations = new int[capacity];
+        improvingMutations = new int[capacity];
+        localSearches = new int[capacity];
+        improvingLocalSearches = new int[capacity];
+        selectionTime = new long[capacity];
+        crossoverTime = new long[capacity];
+        mutationTime = new long[capacity];
+        localSearchTime = new long[capacity];
+        generationTime = new long[capacity];
+        current = new Counters();
+    }
+
+    /**
+     * Get the counters of the generation being bred, for breeding on the
+     * thread that records the generation.
+     * @return  the counters
+     */
+    Counters getCounters () {
+        return current;
+    }
+
+    /**
+     * Add the counters of a breeding thread to the generation being bred.
+     * @param counters  the counters of the thread
+     */
+    synchronized void add (Counters counters) {
+        current.crossovers += counters.crossovers;
+        current.improvingCrossovers += counters.improvingCrossovers;
+        current.mutations += counters.mutations;
+        current.improvingMutations += counters.improvingMutations;
+        current.localSearches += counters.localSearches;
+        current.improvingLocalSearches += counters.improvingLocalSearches;
+        current.selectionTime += counters.selectionTime;
+        current.crossoverTime += counters.crossoverTime;
+        current.mutationTime += counters.mutationTime;
+        current.localSearchTime += counters.localSearchTime;
+    }
+
+    /**
+     * Record a generation once it is bred, overwriting the oldest one kept
+     * if the Metrics are full. The counters start over for the next one.
+     * @param number        the number of the generation
+     * @param population    the generation
+     * @param time          the time it took to create the generation, in nanoseconds
+     */
+    synchronized void record (int number, Population population, long time) {
+        int slot = (int)(recorded % capacity);
+
+        // The mean and the diversity in a single pass, as in GeneticAlgorithm.getDiversity.
+        double sum = 0;
+        double sumOfSquares = 0;
+        for (int i = 0; i < population.size(); i++) {
+            double length = population.get(i).getLength();
+            sum += length;
+            sumOfSquares += length * length;
+        }
+        double average = sum / population.size();
+        double variance = Math.max(0, sumOfSquares / population.size() - average * average);
+
+        generation[slot] = number;
+        best[slot] = population.getMostFit().getLength();
+        mean[slot] = average;
+        diversity[slot] = (average == 0) ? 0 : Math.sqrt(variance) / average;
+        crossovers[slot] = current.crossovers;
+        improvingCrossovers[slot] = current.improvingCrossovers;
+        mutations[slot] = current.mutations;
+        improvingMutations[slot] = current.improvingMutations;
+        localSearches[slot] = current.localSearches;
+        improvingLocalSearches[slot] = current.improvingLocalSearches;
+        selectionTime[slot] = current.selectionTime;
+        crossoverTime[slot] = current.crossoverTime;
+        mutationTime[slot] = current.mutationTime;
+        localSearchTime[slot] = current.localSearchTime;
+        generationTime[slot] = time;
+
+        recorded++;
+        current.clear();
+    }
+
+    /**
+     * Get the number of generations kept.
+     * @return  at most the capacity
+     */
+    public synchronized int size () {
+        return (int)Math.min(recorded, capacity);
+    }
+
+    /**
+     * Get the slot of a kept generation, 0 being the oldest one kept.
+     */
+    private int slot (int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+        return (int)((recorded - size() + index) % capacity);
+    }
+
+    public synchronized int getGeneration (int index) {
+        return generation[slot(index)];
+    }
+
+    public synchronized double getBest (int index) {
+        return best[slot(index)];
+    }
+
+    public synchronized double getMean (int index) {
+        return mean[slot(index)];
+    }
+
+    public synchronized double getDiversity (int index) {
+        return diversity[slot(index)];
+    }
+
+    /**
+     * Get the fraction of the crossovers of a generation that gave a child
+     * shorter than both its parents.
+     * @param index     the index of the generation, 0 being the oldest one kept
+     * @return          the success rate, 0 if there was no crossover
+     */
+    public synchronized double getCrossoverSuccessRate (int index) {
+        int slot = slot(index);
+        return rate(improvingCrossovers[slot], crossovers[slot]);
+    }
+
+    /**
+     * Get the fraction of the mutations of a generation that made the tour shorter.
+     * @param index     the index of the generation, 0 being the oldest one kept
+     * @return          the success rate, 0 if there was no mutation
+     */
+    public synchronized double getMutationSuccessRate (int index) {
+        int slot = slot(index);
+        return rate(improvingMutations[slot], mutations[slot]);
+    }
+
+    /**
+     * Get the fraction of the local searches of a generation that made the tour shorter.
+     * @param index     the index of the generation, 0 being the oldest one kept
+     * @return          the success rate, 0 if there was no local search
+     */
+    public synchronized double getLocalSearchSuccessRate (int index) {
+        int slot = slot(index);
+        return rate(improvingLocalSearches[slot], localSearches[slot]);
+    }
+
+    private static double rate (int successes, int attempts) {
+        return (attempts == 0) ? 0 : (double)successes / attempts;
+    }
+
+    public synchronized long getSelectionTime (int index) {
+        return selectionTime[slot(index)];
+    }
+
+    public synchronized long getCrossoverTime (int index) {
+        return crossoverTime[slot(index)];
+    }
+
+    public synchronized long getMutationTime (int index) {
+        return mutationTime[slot(index)];
+    }
+
+    public synchronized long getLocalSearchTime (int index) {
+        return localSearchTime[slot(index)];
+    }
+
+    public synchronized long getGenerationTime (int index) {
+        return generationTime[slot(index)];
+    }
+
+    /**
+     * Write the kept generations as CSV, one line per generation after a
+     * header line. The times are in nanoseconds.
+     * @param writer    where to write the CSV
+     * @throws IOException  if the writer fails
+     */
+    public synchronized void writeCsv (Writer writer) throws IOException {
+        writer.write("generation,best,mean,diversity," +
+                "crossovers,improving_crossovers,mutations,improving_mutations," +
+                "local_searches,improving_local_searches," +
+                "selection_ns,crossover_ns,mutation_ns,local_search_ns,generation_ns\n");
+        for (int i = 0; i < size(); i++) {
+            int slot = slot(i);
+            writer.write(generation[slot] + "," + best[slot] + "," + mean[slot] + "," +
+                    diversity[slot] + "," + crossovers[slot] + "," + improvingCrossovers[slot] + "," +
+                    mutations[slot] + "," + improvingMutations[slot] + "," +
+                    localSearches[slot] + "," + improvingLocalSearches[slot] + "," +
+                    selectionTime[slot] + "," + crossoverTime[slot] + "," + mutationTime[slot] + "," +
+                    localSearchTime[slot] + "," + generationTime[slot] + "\n");
+        }
+        writer.flush();
+    }
+
+    /**
+     * Write the kept generations as a JSON array, with one object per
+     * generation whose keys are the columns of writeCsv.
+     * @param writer    where to write the JSON
+     * @throws IOException  if the writer fails
+     */
+    public synchronized void writeJson (Writer writer) throws IOException {
+        writer.write("[");
+        for (int i = 0; i < size(); i++) {
+            int slot = slot(i);
+            writer.write((i == 0) ? "\n" : ",\n");
+            writer.write("  {\"generation\": " + generation[slot] +
+                    ", \"best\": " + best[slot] +
+                    ", \"mean\": " + mean[slot] +
+                    ", \"diversity\": " + diversity[slot] +
+                    ", \"crossovers\": " + crossovers[slot] +
+                    ", \"improving_crossovers\": " + improvingCrossovers[slot] +
+                    ", \"mutations\": " + mutations[slot] +
+                    ", \"improving_mutations\": " + improvingMutations[slot] +
+                    ", \"local_searches\": " + localSearches[slot] +
+                    ", \"improving_local_searches\": " + improvingLocalSearches[slot] +
+                    ", \"selection_ns\": " + selectionTime[slot] +
+                    ", \"crossover_ns\": " + crossoverTime[slot] +
+                    ", \"mutation_ns\": " + mutationTime[slot] +
+                    ", \"local_search_ns\": " + localSearchTime[slot] +
+                    ", \"generation_ns\": " + generationTime[slot] + "}");
+        }
+        writer.write("\n]\n");
+        writer.flush();
+    }
+
+    /**
+     * The counts and times of one breeding thread during one generation.
+     * Each method takes the time the phase started and returns the time the
+     * next phase starts. Working out the lengths of the tours to compare
+     * them is left out of the times of both.
+     */
+    static class Counters {
+
+        int crossovers;
+        int improvingCrossovers;
+        int mutations;
+        int improvingMutations;
+        int localSearches;
+        int improvingLocalSearches;
+        long selectionTime;
+        long crossoverTime;
+        long mutationTime;
+        long localSearchTime;
+
+        long selected (long start) {
+            long end = System.nanoTime();
+            selectionTime += end - start;
+            return end;
+        }
+
+        long crossedOver (long start, Chromosome p1, Chromosome p2, Chromosome c1, Chromosome c2) {
+            long end = System.nanoTime();
+            crossoverTime += end - start;
+            double parents = Math.min(p1.getLength(), p2.getLength());
+            crossovers += 2;
+            if (c1.getLength() < parents) improvingCrossovers++;
+            if (c2.getLength() < parents) improvingCrossovers++;
+            return System.nanoTime();
+        }
+
+        long mutated (long start, Chromosome before, Chromosome after) {
+            long end = System.nanoTime();
+            mutationTime += end - start;
+            mutations++;
+            if (after.getLength() < before.getLength()) improvingMutations++;
+            return System.nanoTime();
+        }
+
+        long searched (long start, Chromosome before, Chromosome after) {
+            long end = System.nanoTime();
+            localSearchTime += end - start;
+            localSearches++;
+            if (after.getLength() < before.getLength()) improvingLocalSearches++;
+            return System.nanoTime();
+        }
+
+        void clear () {
+            crossovers = 0;
+            improvingCrossovers = 0;
+            mutations = 0;
+            improvingMutations = 0;
+            localSearches = 0;
+            improvingLocalSearches = 0;
+            selectionTime = 0;
+            crossoverTime = 0;
+            mutationTime = 0;
+            localSearchTime = 0;
+        }
+    }
+
+}
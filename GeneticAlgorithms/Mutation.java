@@ -1,12 +1,17 @@
 package GeneticAlgorithms;
 
 import GeneticObjects.Chromosome;
-import GeneticObjects.City;
+import GeneticObjects.CityTable;
+import GeneticObjects.NeighborLists;
+import GeneticObjects.TourPool;
 
 import java.util.Random;
 
 /**
- * Used for mutating the Chromosomes.
+ * Used for mutating the Chromosomes. Each mutation works out how much the
+ * length and the fingerprint of the tour changed from the few edges it
+ * replaced, so the mutated Chromosome does not have to go over all of its
+ * edges again. The tours of the mutated Chromosomes come from the TourPool.
  */
 class Mutation {
 
@@ -23,24 +28,89 @@ class Mutation {
      * @return              the mutated Chromosome
      */
     static Chromosome insertion (Chromosome chromosome, Random random) {
-        City[] cities = chromosome.getArray();
-        int randomIndex = random.nextInt(cities.length);
-        int randomDestination = random.nextInt(cities.length);
+        CityTable table = chromosome.getCityTable();
+        int[] cities = TourPool.copyTour(chromosome);
+        int n = cities.length;
+        int randomIndex = random.nextInt(n);
+        int randomDestination = random.nextInt(n);
+
+        double delta = insertionDelta(table, cities, randomIndex, randomDestination);
+        int city = cities[randomIndex];
+        int previous = cities[(randomIndex - 1 + n) % n];
+        int next = cities[(randomIndex + 1) % n];
 
         if (randomIndex < randomDestination) {
-            City temp = cities[randomIndex];
+            int temp = cities[randomIndex];
             for (int i = randomIndex; i < randomDestination; i++) {
                 cities[i] = cities[i+1];
             }
             cities[randomDestination] = temp;
         } else {
-            City temp = cities[randomIndex];
+            int temp = cities[randomIndex];
             for (int i = randomIndex; i > randomDestination; i--) {
                 cities[i] = cities[i-1];
             }
             cities[randomDestination] = temp;
         }
-        return new Chromosome(cities);
+
+        // The city now sits in between these two, which used to be joined.
+        int before = cities[(randomDestination - 1 + n) % n];
+        int after = cities[(randomDestination + 1) % n];
+        long fingerprintDelta = Chromosome.edgeFingerprint(previous, next)
+                + Chromosome.edgeFingerprint(before, city)
+                + Chromosome.edgeFingerprint(city, after)
+                - Chromosome.edgeFingerprint(previous, city)
+                - Chromosome.edgeFingerprint(city, next)
+                - Chromosome.edgeFingerprint(before, after);
+
+        return chromosome.derive(cities, delta, fingerprintDelta);
+    }
+
+    /**
+     * Finds the change in length caused by moving a city to another index.
+     * The city is taken out from between its two neighbours, which are then
+     * joined, and put in between the two cities that end up on either side of it.
+     * @param table     the cities of the tour
+     * @param tour      the tour before the city is moved
+     * @param from      the index of the city to move
+     * @param to        the index the city is moved to
+     * @return          the length after the move minus the length before it
+     */
+    private static double insertionDelta (CityTable table, int[] tour, int from, int to) {
+        int n = tour.length;
+
+        // Every tour through 3 cities or less has the same length.
+        if (from == to || n < 4) {
+            return 0;
+        }
+
+        int city = tour[from];
+        int previous = tour[(from - 1 + n) % n];
+        int next = tour[(from + 1) % n];
+
+        // The two cities that the city is put in between.
+        int before, after;
+        if (from < to) {
+            before = tour[to];
+            after = tour[(to + 1) % n];
+            if (after == city) after = next;
+        } else {
+            before = tour[(to - 1 + n) % n];
+            after = tour[to];
+            if (before == city) before = previous;
+        }
+
+        // Put back where it was taken from, only the starting point of the tour moved.
+        if (before == previous && after == next) {
+            return 0;
+        }
+
+        return (double)table.distance(previous, next)
+                + table.distance(before, city)
+                + table.distance(city, after)
+                - table.distance(previous, city)
+                - table.distance(city, next)
+                - table.distance(before, after);
     }
 
     /**
@@ -50,10 +120,22 @@ class Mutation {
      * @return              the mutated Chromosome
      */
     static Chromosome reciprocalExchange (Chromosome chromosome, Random random) {
-        City[] cities = chromosome.getArray();
+        CityTable table = chromosome.getCityTable();
+        int[] cities = TourPool.copyTour(chromosome);
         int l = cities.length;
-        swap(cities, random.nextInt(l), random.nextInt(l));
-        return new Chromosome(cities);
+        int i = random.nextInt(l);
+        int j = random.nextInt(l);
+
+        // Only the edges on either side of the two cities change.
+        int e1 = (i - 1 + l) % l;
+        int e2 = (j - 1 + l) % l;
+        double before = sumOfEdges(table, cities, e1, i, e2, j);
+        long fingerprintBefore = fingerprintOfEdges(cities, e1, i, e2, j);
+        swap(cities, i, j);
+        double after = sumOfEdges(table, cities, e1, i, e2, j);
+        long fingerprintAfter = fingerprintOfEdges(cities, e1, i, e2, j);
+
+        return chromosome.derive(cities, after - before, fingerprintAfter - fingerprintBefore);
     }
 
     /**
@@ -71,26 +153,383 @@ class Mutation {
          * at indexes 8, 9, 1, and 2.
          */
 
-        City[] cities = chromosome.getArray();
+        CityTable table = chromosome.getCityTable();
+        int[] cities = TourPool.copyTour(chromosome);
         int randomIndexStart = random.nextInt(cities.length);
         int randomIndexEnd = random.nextInt(cities.length);
 
+        // Only the edges touching the subset change, unless it is most of the tour.
+        int subsetSize = (randomIndexEnd - randomIndexStart + cities.length) % cities.length;
+        boolean useDelta = subsetSize + 1 < cities.length;
+        int firstEdge = (randomIndexStart - 1 + cities.length) % cities.length;
+        double before = useDelta ? sumOfEdges(table, cities, firstEdge, subsetSize + 1) : 0;
+        long fingerprintBefore = useDelta ? fingerprintOfEdges(cities, firstEdge, subsetSize + 1) : 0;
+
         for (int i = randomIndexStart; i%cities.length != randomIndexEnd; i++) {
-            int r = random.nextInt(Math.abs(i%cities.length - randomIndexEnd));
+            // Only swap with cities that are still ahead of i in the subset.
+            int remaining = (randomIndexEnd - i%cities.length + cities.length) % cities.length;
+            int r = random.nextInt(remaining);
             swap(cities, i%cities.length, (i+r)%cities.length);
         }
 
-        return new Chromosome(cities);
+        if (!useDelta) {
+            return new Chromosome(table, cities);
+        }
+
+        double after = sumOfEdges(table, cities, firstEdge, subsetSize + 1);
+        long fingerprintAfter = fingerprintOfEdges(cities, firstEdge, subsetSize + 1);
+        return chromosome.derive(cities, after - before, fingerprintAfter - fingerprintBefore);
+    }
+
+    /**
+     * Reverses a part of the tour so that a random city is followed by one
+     * of its nearest neighbors (a 2-opt move). The two edges that are taken
+     * out and the two that replace them are all that change, so the new
+     * length is found in O(1). Since the new edge is always a short one, the
+     * move makes the tour shorter far more often than a blind one would.
+     * @param chromosome    the Chromosome to mutate
+     * @param random        the Random object used for picking the cities
+     * @return              the mutated Chromosome
+     */
+    static Chromosome twoOpt (Chromosome chromosome, Random random) {
+        CityTable table = chromosome.getCityTable();
+        int n = chromosome.size();
+
+        // Every tour through 3 cities or less has the same length.
+        if (n < 4) {
+            return chromosome;
+        }
+
+        int[] cities = TourPool.copyTour(chromosome);
+        int i = random.nextInt(n);
+        int a = cities[i];
+        int b = cities[(i + 1) % n];
+
+        // A neighbor that is already next to a cannot be joined to it.
+        int j = -1;
+        NeighborLists lists = table.getNeighborLists(NEIGHBORS);
+        int k = Math.min(NEIGHBORS, lists.getK());
+        int first = random.nextInt(k);
+        for (int tries = 0; tries < k && j == -1; tries++) {
+            int neighbor = lists.get(a, (first + tries) % k);
+            int index = indexOf(cities, neighbor);
+            if (neighbor != b && cities[(index + 1) % n] != a) {
+                j = index;
+            }
+        }
+        if (j == -1) {
+            TourPool.give(cities);
+            return chromosome;
+        }
+        int c = cities[j];
+        int d = cities[(j + 1) % n];
+
+        // a b ... c d becomes a c ... b d, or the other way around when c comes first.
+        if (i < j) {
+            reverse(cities, i + 1, j);
+        } else {
+            reverse(cities, j + 1, i);
+        }
+
+        double delta = (double)table.distance(a, c) + table.distance(b, d)
+                - table.distance(a, b) - table.distance(c, d);
+        long fingerprintDelta = Chromosome.edgeFingerprint(a, c) + Chromosome.edgeFingerprint(b, d)
+                - Chromosome.edgeFingerprint(a, b) - Chromosome.edgeFingerprint(c, d);
+
+        return chromosome.derive(cities, delta, fingerprintDelta);
+    }
+
+    /**
+     * Moves a segment of 1 to 3 cities, starting at a random city, next to
+     * one of the nearest neighbors of that city (an Or-opt move). The segment
+     * goes on whichever side of the neighbor is shorter, the right way
+     * around for that side. Three edges are taken out and three added, so the
+     * new length is found in O(1).
+     * @param chromosome    the Chromosome to mutate
+     * @param random        the Random object used for picking the segment and the neighbor
+     * @return              the mutated Chromosome
+     */
+    static Chromosome orOpt (Chromosome chromosome, Random random) {
+        CityTable table = chromosome.getCityTable();
+        int n = chromosome.size();
+        int length = 1 + random.nextInt(MAX_SEGMENT);
+
+        // Enough cities must be left outside the segment to put it somewhere new.
+        if (n < length + 3) {
+            return chromosome;
+        }
+
+        int[] tour = TourPool.copyTour(chromosome);
+
+        int start = random.nextInt(n);
+        int end = (start + length - 1) % n;
+        int s1 = tour[start];
+        int s2 = tour[end];
+        int previous = tour[(start - 1 + n) % n];
+        int next = tour[(end + 1) % n];
+
+        // The segment goes in between x and y, the city after x once the
+        // segment is out. Either after the neighbor, joined to s1 (forward),
+        // or before it, joined to s1 from the other side (reversed).
+        NeighborLists lists = table.getNeighborLists(NEIGHBORS);
+        int k = Math.min(NEIGHBORS, lists.getK());
+        int first = random.nextInt(k);
+        int x = -1, y = -1;
+        boolean reversed = false;
+        double delta = 0;
+        for (int tries = 0; tries < k && x == -1; tries++) {
+            int neighbor = lists.get(s1, (first + tries) % k);
+            int index = indexOf(tour, neighbor);
+            if ((index - start + n) % n < length) {
+                continue; // In the segment.
+            }
+            double removed = (double)table.distance(previous, s1) + table.distance(s2, next)
+                    - table.distance(previous, next);
+
+            double after = Double.POSITIVE_INFINITY;
+            int afterNext = (neighbor == previous) ? next : tour[(index + 1) % n];
+            if (neighbor != previous) {
+                after = (double)table.distance(neighbor, s1) + table.distance(s2, afterNext)
+                        - table.distance(neighbor, afterNext);
+            }
+
+            double before = Double.POSITIVE_INFINITY;
+            int beforePrevious = (neighbor == next) ? previous : tour[(index - 1 + n) % n];
+            if (neighbor != next) {
+                before = (double)table.distance(beforePrevious, s2) + table.distance(s1, neighbor)
+                        - table.distance(beforePrevious, neighbor);
+            }
+
+            if (after <= before && after != Double.POSITIVE_INFINITY) {
+                x = neighbor;
+                y = afterNext;
+                reversed = false;
+                delta = after - removed;
+            } else if (before != Double.POSITIVE_INFINITY) {
+                x = beforePrevious;
+                y = neighbor;
+                reversed = true;
+                delta = before - removed;
+            }
+        }
+        if (x == -1) {
+            TourPool.give(tour);
+            return chromosome;
+        }
+
+        // Walk the cities outside the segment, from the one after it around
+        // to the one before it, and put the segment back in after x.
+        int[] cities = TourPool.take(n);
+        int filled = 0;
+        for (int i = (end + 1) % n; i != start; i = (i + 1) % n) {
+            cities[filled++] = tour[i];
+            if (tour[i] == x) {
+                for (int s = 0; s < length; s++) {
+                    cities[filled++] = reversed ? tour[(end - s + n) % n] : tour[(start + s) % n];
+                }
+            }
+        }
+        TourPool.give(tour);
+
+        int head = reversed ? s2 : s1;
+        int tail = reversed ? s1 : s2;
+        long fingerprintDelta = Chromosome.edgeFingerprint(previous, next)
+                + Chromosome.edgeFingerprint(x, head)
+                + Chromosome.edgeFingerprint(tail, y)
+                - Chromosome.edgeFingerprint(previous, s1)
+                - Chromosome.edgeFingerprint(s2, next)
+                - Chromosome.edgeFingerprint(x, y);
+
+        return chromosome.derive(cities, delta, fingerprintDelta);
+    }
+
+    /**
+     * Cuts the tour into four parts A B C D at three random places and joins
+     * them up again as A C B D (a double bridge). This is the move a 2-opt or
+     * Or-opt search can not undo in a single step, so it moves a tour out of
+     * a local optimum without scrambling it. Three edges are taken out and
+     * three added, so the new length is found in O(1).
+     * @param chromosome    the Chromosome to mutate
+     * @param random        the Random object used for picking the cuts
+     * @return              the mutated Chromosome
+     */
+    static Chromosome doubleBridge (Chromosome chromosome, Random random) {
+        CityTable table = chromosome.getCityTable();
+        int n = chromosome.size();
+
+        // Each part needs at least one city.
+        if (n < 4) {
+            return chromosome;
+        }
+
+        // Three different cuts from 1 to n-1, in order.
+        int p1 = 1 + random.nextInt(n - 1);
+        int p2, p3;
+        do {
+            p2 = 1 + random.nextInt(n - 1);
+        } while (p2 == p1);
+        do {
+            p3 = 1 + random.nextInt(n - 1);
+        } while (p3 == p1 || p3 == p2);
+        int a = Math.min(p1, Math.min(p2, p3));
+        int c = Math.max(p1, Math.max(p2, p3));
+        int b = p1 + p2 + p3 - a - c;
+
+        int[] tour = TourPool.copyTour(chromosome);
+        int[] cities = TourPool.take(n);
+        System.arraycopy(tour, 0, cities, 0, a);
+        System.arraycopy(tour, b, cities, a, c - b);
+        System.arraycopy(tour, a, cities, a + c - b, b - a);
+        System.arraycopy(tour, c, cities, c, n - c);
+
+        int endA = tour[a - 1], startB = tour[a], endB = tour[b - 1];
+        int startC = tour[b], endC = tour[c - 1], startD = tour[c];
+        TourPool.give(tour);
+        double delta = (double)table.distance(endA, startC) + table.distance(endC, startB)
+                + table.distance(endB, startD)
+                - table.distance(endA, startB) - table.distance(endB, startC)
+                - table.distance(endC, startD);
+        long fingerprintDelta = Chromosome.edgeFingerprint(endA, startC)
+                + Chromosome.edgeFingerprint(endC, startB)
+                + Chromosome.edgeFingerprint(endB, startD)
+                - Chromosome.edgeFingerprint(endA, startB)
+                - Chromosome.edgeFingerprint(endB, startC)
+                - Chromosome.edgeFingerprint(endC, startD);
+
+        return chromosome.derive(cities, delta, fingerprintDelta);
+    }
+
+    // The nearest neighbors looked at by the 2-opt and Or-opt mutations.
+    private static final int NEIGHBORS = 8;
+
+    // The most cities moved at once by the Or-opt mutation.
+    private static final int MAX_SEGMENT = 3;
+
+    private static int indexOf (int[] tour, int city) {
+        for (int i = 0; i < tour.length; i++) {
+            if (tour[i] == city) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("The city is not in the tour.");
+    }
+
+    /**
+     * Reverses the cities from one index to another, both included.
+     * @param array     the array of city indexes
+     * @param from      the first index
+     * @param to        the last index, not less than from
+     */
+    private static void reverse (int[] array, int from, int to) {
+        while (from < to) {
+            swap(array, from++, to--);
+        }
+    }
+
+    /**
+     * Adds up the lengths of up to four edges of a tour, counting an edge
+     * that is given more than once only once. Edge e goes from the city at
+     * index e to the city at index e+1 (or back to the first city).
+     * @param table     the cities of the tour
+     * @param tour      the tour
+     * @param e1        the first edge
+     * @param e2        the second edge
+     * @param e3        the third edge
+     * @param e4        the fourth edge
+     * @return          the total length of the distinct edges
+     */
+    private static double sumOfEdges (CityTable table, int[] tour, int e1, int e2, int e3, int e4) {
+        double sum = edge(table, tour, e1);
+        if (e2 != e1) {
+            sum += edge(table, tour, e2);
+        }
+        if (e3 != e1 && e3 != e2) {
+            sum += edge(table, tour, e3);
+        }
+        if (e4 != e1 && e4 != e2 && e4 != e3) {
+            sum += edge(table, tour, e4);
+        }
+        return sum;
+    }
+
+    /**
+     * Adds up the lengths of consecutive edges of a tour, wrapping around.
+     * @param table     the cities of the tour
+     * @param tour      the tour
+     * @param first     the first edge
+     * @param count     the number of edges
+     * @return          the total length of the edges
+     */
+    private static double sumOfEdges (CityTable table, int[] tour, int first, int count) {
+        double sum = 0;
+        for (int i = 0; i < count; i++) {
+            sum += edge(table, tour, (first + i) % tour.length);
+        }
+        return sum;
+    }
+
+    /**
+     * Adds up the fingerprints of up to four edges of a tour, like
+     * sumOfEdges(table, tour, e1, e2, e3, e4) adds up their lengths.
+     * @param tour      the tour
+     * @param e1        the first edge
+     * @param e2        the second edge
+     * @param e3        the third edge
+     * @param e4        the fourth edge
+     * @return          the sum of the fingerprints of the distinct edges
+     */
+    private static long fingerprintOfEdges (int[] tour, int e1, int e2, int e3, int e4) {
+        long sum = edgeFingerprint(tour, e1);
+        if (e2 != e1) {
+            sum += edgeFingerprint(tour, e2);
+        }
+        if (e3 != e1 && e3 != e2) {
+            sum += edgeFingerprint(tour, e3);
+        }
+        if (e4 != e1 && e4 != e2 && e4 != e3) {
+            sum += edgeFingerprint(tour, e4);
+        }
+        return sum;
+    }
+
+    /**
+     * Adds up the fingerprints of consecutive edges of a tour, wrapping around.
+     * @param tour      the tour
+     * @param first     the first edge
+     * @param count     the number of edges
+     * @return          the sum of the fingerprints of the edges
+     */
+    private static long fingerprintOfEdges (int[] tour, int first, int count) {
+        long sum = 0;
+        for (int i = 0; i < count; i++) {
+            sum += edgeFingerprint(tour, (first + i) % tour.length);
+        }
+        return sum;
+    }
+
+    private static long edgeFingerprint (int[] tour, int e) {
+        return Chromosome.edgeFingerprint(tour[e], tour[(e + 1) % tour.length]);
+    }
+
+    /**
+     * Get the length of the edge from the city at an index to the next city.
+     * @param table     the cities of the tour
+     * @param tour      the tour
+     * @param e         the index of the city the edge starts at
+     * @return          the length of the edge
+     */
+    private static float edge (CityTable table, int[] tour, int e) {
+        return table.distance(tour[e], tour[(e + 1) % tour.length]);
     }
 
     /**
      * Helper method for swapping two Cities in a Chromosome to change the tour.
-     * @param array     the array of Cities to do the swap in
+     * @param array     the array of city indexes to do the swap in
      * @param i         the index of the first City
      * @param j         the index of the second City
      */
-    private static void swap (City[] array, int i, int j) {
-        City temp = array[i];
+    private static void swap (int[] array, int i, int j) {
+        int temp = array[i];
         array[i] = array[j];
         array[j] = temp;
     }
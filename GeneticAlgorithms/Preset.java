@@ -43,4 +43,47 @@ public class Preset {
         return geneticAlgorithm;
     }
 
+    /**
+     * An island model with one island per core. The islands take turns at
+     * using each crossover type, so that they do not all search the same way.
+     */
+    public static IslandModel getDefaultIslandModel () {
+
+        Random random = new Random();
+        long seed = random.nextLong();
+        System.out.println("Seed: " + seed);
+        Random r = new Random(seed);
+
+        // Parameters.
+        int     islands         = Runtime.getRuntime().availableProcessors();
+        int     popSize         = 200;      // Size of the population of each island.
+        int     maxGen          = 500;      // Number of generations to run.
+        double  crossoverRate   = 0.90;     // Odds that crossover will occur.
+        double  mutationRate    = 0.04;     // Odds that mutation will occur.
+
+        IslandModel islandModel = new IslandModel();
+        GeneticAlgorithm.CrossoverType[] crossoverTypes = GeneticAlgorithm.CrossoverType.values();
+
+        for (int i = 0; i < islands; i++) {
+            Random islandRandom = new Random(r.nextLong());
+            GeneticAlgorithm geneticAlgorithm = new GeneticAlgorithm();
+            geneticAlgorithm.setPopulation(fromDataSet(popSize, DataSet.att48, islandRandom));
+            geneticAlgorithm.setMaxGen(maxGen);
+            geneticAlgorithm.setK(3);
+            geneticAlgorithm.setElitismValue(1);
+            geneticAlgorithm.setCrossoverRate(crossoverRate);
+            geneticAlgorithm.setMutationRate(mutationRate);
+            geneticAlgorithm.setRandom(islandRandom);
+            geneticAlgorithm.setCrossoverType(crossoverTypes[i % crossoverTypes.length]);
+            geneticAlgorithm.setMutationType(GeneticAlgorithm.MutationType.INSERTION);
+            islandModel.addIsland(geneticAlgorithm);
+        }
+
+        islandModel.setMigrationInterval(10);
+        islandModel.setMigrationSize(2);
+        islandModel.setTopology(IslandModel.Topology.RING);
+
+        return islandModel;
+    }
+
 }
@@ -3,11 +3,13 @@ package GeneticAlgorithms;
 import GeneticObjects.Chromosome;
 import GeneticObjects.Population;
 
-import java.util.ArrayList;
 import java.util.Random;
 
 /**
  * Determines which chromosomes will survive and potentially reproduce.
+ * Tournament selection needs nothing but the population. The other kinds of
+ * selection (see GeneticAlgorithm.SelectionType) draw from a Sampler that is
+ * built once per generation, after which every draw takes O(1).
  */
 class Selection {
 
@@ -23,6 +25,11 @@ class Selection {
     /**
      * Picks k Chromosomes at at random and then return the best one.
      * There is a small chance that the best one will not be selected.
+     * <br/>
+     * The k picks are not stored anywhere. Instead they are drawn from a
+     * small generator seeded with a single draw from the Random object, so
+     * that they can be drawn a second time when one of the picks that is not
+     * the best is needed. Selection therefore allocates nothing.
      * @param population    the population to selected from
      * @param k             the number of chromosomes to select
      * @param random        the Random object for randomly selecting
@@ -33,68 +40,228 @@ class Selection {
             throw new IllegalArgumentException("K must be greater than 0.");
         }
 
-        Chromosome[] populationAsArray = population.getChromosomes();
-        ArrayList<Chromosome> kChromosomes = getKChromosomes(populationAsArray, k, random);
-        return getChromosome(kChromosomes, random);
+        int size = population.size();
+        long seed = random.nextLong();
+
+        // Find the best of the k picks, remembering which pick it was.
+        long state = seed;
+        int bestPick = 0;
+        Chromosome bestChromosome = null;
+        for (int pick = 0; pick < k; pick++) {
+            state += GOLDEN_GAMMA;
+            Chromosome chromosome = population.get(bound(state, size));
+            if (bestChromosome == null || chromosome.getDistance() < bestChromosome.getDistance()) {
+                bestChromosome = chromosome;
+                bestPick = pick;
+            }
+        }
+
+        // 1 in 5 chance to return a chromosome that is not the best.
+        if (random.nextInt(ODDS_OF_NOT_PICKING_FITTEST) == 0 && k != 1) {
+            int other = random.nextInt(k - 1);
+            if (other >= bestPick) {
+                other++;
+            }
+            return population.get(bound(seed + (other + 1) * GOLDEN_GAMMA, size));
+        }
+
+        return bestChromosome;
     }
 
+    // The increment of the SplitMix64 generator used for drawing the picks.
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
     /**
-     * Returns k randomly selected Chromosomes.
-     * @param pop       an array of Chromosomes (a population)
-     * @param k         the number of Chromosomes to randomly select
-     * @param random    the Random object used for picking a random chromosomes
-     * @return          k randomly selected chromosomes
+     * Turns a state of the pick generator into an index from 0 to size-1.
+     * @param state     the state of the generator
+     * @param size      the number of possible indexes
+     * @return          the index
      */
-    private static ArrayList<Chromosome> getKChromosomes (Chromosome[] pop, int k, Random random) {
+    private static int bound (long state, int size) {
+        // SplitMix64 finalizer.
+        long z = state;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z = z ^ (z >>> 31);
+        return (int)(((z >>> 32) * size) >>> 32);
+    }
 
-        ArrayList<Chromosome> kChromosomes = new ArrayList<>();
+    /**
+     * Draws indexes of the population with a probability that depends on the
+     * length of the tour at the index. The probabilities are worked out once
+     * per generation into an alias table (Vose's alias method), which takes
+     * O(n), after which each draw takes O(1): pick an index uniformly, then
+     * either keep it or take its alias. The arrays are kept from one
+     * generation to the next, so building the table does not allocate
+     * anything once the population stops growing.
+     * <br/>
+     * Roulette selection weighs each tour by how much shorter it is than the
+     * longest tour of the population (windowing), rather than by the inverse
+     * of its length, since the lengths of a population are usually so close
+     * together that the inverse would hardly favour the shorter tours. Linear
+     * rank selection weighs each tour by its rank alone, from twice the mean
+     * weight for the shortest tour down to 0 for the longest. Stochastic
+     * universal sampling uses the roulette weights, but spins the wheel once
+     * for the whole generation, with evenly spaced pointers, and shuffles
+     * the picks into a mating pool that is then read in order.
+     * <br/>
+     * Once built, a Sampler can be drawn from by several threads at once.
+     */
+    static class Sampler {
+
+        // The weight of the shortest tour compared to the mean weight, for
+        // linear rank selection. From 1 (no preference) to 2.
+        private static final double RANK_PRESSURE = 2.0;
 
-        for (int j = 0; j < k; j++) {
-            Chromosome chromosome = pop[random.nextInt(pop.length)];
-            kChromosomes.add(chromosome);
+        private double[] weights = new double[0];
+        private double[] probabilities = new double[0];
+        private int[] aliases = new int[0];
+        private int[] work = new int[0];        // The small and large worklists of the build.
+        private int[] matingPool = new int[0];  // For stochastic universal sampling.
+        private int size;
+
+        /**
+         * Prepare for roulette selection of a population.
+         * @param population    the population to draw from
+         */
+        void roulette (Population population) {
+            resize(population.size());
+            setRouletteWeights(population);
+            buildAliasTable();
         }
 
-        return kChromosomes;
-    }
+        /**
+         * Prepare for linear rank selection of a population. Sorts the
+         * population, since the rank of every tour is needed.
+         * @param population    the population to draw from
+         */
+        void linearRank (Population population) {
+            resize(population.size());
+            population.sort();
+            for (int i = 0; i < size; i++) {
+                weights[i] = (size == 1) ? 1 : (2 - RANK_PRESSURE) +
+                        2 * (RANK_PRESSURE - 1) * (size - 1 - i) / (size - 1);
+            }
+            buildAliasTable();
+        }
 
-    /**
-     * Get the best Chromosome in a list of Chromosomes. There is a small chance
-     * that a randomly selected Chromosome is picked instead of the best one.
-     * @param arrayList     the list of Chromosomes
-     * @param random        the Random object used for selecting a random Chromosome if needed
-     * @return              usually the best Chromosome
-     */
-    private static Chromosome getChromosome (ArrayList<Chromosome> arrayList, Random random) {
+        /**
+         * Prepare for stochastic universal sampling of a population: picks
+         * as many indexes as the population holds with a single spin of the
+         * roulette wheel and shuffles them.
+         * @param population    the population to draw from
+         * @param random        the Random object for the spin and the shuffle
+         */
+        void stochasticUniversal (Population population, Random random) {
+            resize(population.size());
+            setRouletteWeights(population);
 
-        Chromosome bestChromosome = getBestChromosome(arrayList);
+            double total = 0;
+            for (int i = 0; i < size; i++) {
+                total += weights[i];
+            }
+            double step = total / size;
+            double pointer = random.nextDouble() * step;
+            double cumulative = weights[0];
+            int index = 0;
+            for (int pick = 0; pick < size; pick++) {
+                while (cumulative <= pointer && index < size - 1) {
+                    cumulative += weights[++index];
+                }
+                matingPool[pick] = index;
+                pointer += step;
+            }
 
-        // 1 in 5 chance to return a chromosome that is not the best.
-        if (random.nextInt(ODDS_OF_NOT_PICKING_FITTEST) == 0 && arrayList.size() != 1) {
-            arrayList.remove(bestChromosome);
-            return arrayList.get(random.nextInt(arrayList.size()));
+            for (int i = size - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int temp = matingPool[i];
+                matingPool[i] = matingPool[j];
+                matingPool[j] = temp;
+            }
         }
 
-        return bestChromosome;
-    }
+        /**
+         * Draw an index from the alias table built by roulette or linearRank.
+         * @param random    the Random object for the draw
+         * @return          the index of a Chromosome of the population
+         */
+        int draw (Random random) {
+            int index = random.nextInt(size);
+            return (random.nextDouble() < probabilities[index]) ? index : aliases[index];
+        }
 
-    /**
-     * Get the best Chromosome in a list of Chromosomes.
-     * @param arrayList     the list to search
-     * @return              the best chromosome
-     */
-    private static Chromosome getBestChromosome (ArrayList<Chromosome> arrayList) {
+        /**
+         * Get a pick of stochasticUniversal.
+         * @param pick  the number of the pick, which wraps around the mating pool
+         * @return      the index of a Chromosome of the population
+         */
+        int get (int pick) {
+            return matingPool[pick % size];
+        }
 
-        Chromosome bestC = null;
+        private void resize (int size) {
+            this.size = size;
+            if (weights.length < size) {
+                weights = new double[size];
+                probabilities = new double[size];
+                aliases = new int[size];
+                work = new int[size];
+                matingPool = new int[size];
+            }
+        }
 
-        for (Chromosome c : arrayList) {
-            if (bestC == null) {
-                bestC = c;
-            } else if (c.getDistance() < bestC.getDistance()) {
-                bestC = c;
+        private void setRouletteWeights (Population population) {
+            double longest = 0;
+            double shortest = Double.POSITIVE_INFINITY;
+            for (int i = 0; i < size; i++) {
+                longest = Math.max(longest, population.get(i).getLength());
+                shortest = Math.min(shortest, population.get(i).getLength());
+            }
+            for (int i = 0; i < size; i++) {
+                // All the same weight if all the tours are the same length.
+                weights[i] = (longest > shortest) ? longest - population.get(i).getLength() : 1;
             }
         }
 
-        return bestC;
+        private void buildAliasTable () {
+            double total = 0;
+            for (int i = 0; i < size; i++) {
+                total += weights[i];
+            }
+
+            // Scale the weights so their mean is 1. The indexes below 1 are
+            // put at the front of work and the others at the back.
+            int small = 0;
+            int large = size;
+            for (int i = 0; i < size; i++) {
+                probabilities[i] = (total > 0) ? weights[i] * size / total : 1;
+                if (probabilities[i] < 1) {
+                    work[small++] = i;
+                } else {
+                    work[--large] = i;
+                }
+            }
+
+            // Fill the rest of the slot of each small index with a large one.
+            while (small > 0 && large < size) {
+                int less = work[--small];
+                int more = work[large];
+                aliases[less] = more;
+                probabilities[more] += probabilities[less] - 1;
+                if (probabilities[more] < 1) {
+                    large++;
+                    work[small++] = more;
+                }
+            }
+
+            // What is left is 1 up to rounding errors.
+            while (small > 0) {
+                probabilities[work[--small]] = 1;
+            }
+            while (large < size) {
+                probabilities[work[large++]] = 1;
+            }
+        }
     }
 
 }
@@ -0,0 +1,116 @@
+package GeneticAlgorithms;
+
+/**
+ * A condition under which a GeneticAlgorithm stops before reaching its
+ * maximum generation. The criteria are checked before every generation, so
+ * they should be cheap; the ones given here only read a few values that the
+ * GeneticAlgorithm keeps track of anyway, or make a single pass over the
+ * lengths of the population.
+ * <br/>
+ * A criterion holds no state of its own, so the same criterion can be given
+ * to several GeneticAlgorithms, even ones running at the same time.
+ */
+public interface TerminationCriterion {
+
+    /**
+     * Check whether the run should stop.
+     * @param geneticAlgorithm  the running GeneticAlgorithm
+     * @return                  true to stop before the next generation
+     */
+    boolean isMet (GeneticAlgorithm geneticAlgorithm);
+
+    /**
+     * Describe why the run stopped, once isMet has returned true.
+     * @return  the reason for stopping
+     */
+    String getDescription ();
+
+    /**
+     * Stop once the run has taken a certain amount of time.
+     * @param milliseconds  the time budget of a run
+     * @return              the criterion
+     */
+    static TerminationCriterion timeLimit (long milliseconds) {
+        if (milliseconds < 0) {
+            throw new IllegalArgumentException("Parameter cannot be negative.");
+        }
+        return new TerminationCriterion() {
+            @Override
+            public boolean isMet (GeneticAlgorithm geneticAlgorithm) {
+                return geneticAlgorithm.getElapsedTime() >= milliseconds;
+            }
+
+            @Override
+            public String getDescription () {
+                return "Time limit of " + milliseconds + " ms reached.";
+            }
+        };
+    }
+
+    /**
+     * Stop once the best distance has not improved for some generations.
+     * @param generations   the number of generations without improvement
+     * @return              the criterion
+     */
+    static TerminationCriterion stagnation (int generations) {
+        if (generations < 1) {
+            throw new IllegalArgumentException("Parameter must be greater than 0.");
+        }
+        return new TerminationCriterion() {
+            @Override
+            public boolean isMet (GeneticAlgorithm geneticAlgorithm) {
+                return geneticAlgorithm.getGenerationsWithoutImprovement() >= generations;
+            }
+
+            @Override
+            public String getDescription () {
+                return "No improvement in " + generations + " generations.";
+            }
+        };
+    }
+
+    /**
+     * Stop once a tour at least as short as a target has been found.
+     * @param distance  the target distance
+     * @return          the criterion
+     */
+    static TerminationCriterion targetDistance (int distance) {
+        return new TerminationCriterion() {
+            @Override
+            public boolean isMet (GeneticAlgorithm geneticAlgorithm) {
+                return geneticAlgorithm.getBestDistanceSoFar() <= distance;
+            }
+
+            @Override
+            public String getDescription () {
+                return "Target distance of " + distance + " reached.";
+            }
+        };
+    }
+
+    /**
+     * Stop once the population has become too uniform to make much more
+     * progress, that is once the standard deviation of the lengths of the
+     * tours is less than a fraction of their mean.
+     * @param minimum   the smallest diversity (see GeneticAlgorithm.getDiversity)
+     *                  at which the run goes on
+     * @return          the criterion
+     */
+    static TerminationCriterion diversityCollapse (double minimum) {
+        if (minimum < 0) {
+            throw new IllegalArgumentException("Parameter cannot be negative.");
+        }
+        return new TerminationCriterion() {
+            @Override
+            public boolean isMet (GeneticAlgorithm geneticAlgorithm) {
+                return geneticAlgorithm.getDiversity() < minimum;
+            }
+
+            @Override
+            public String getDescription () {
+                return "Diversity of the population fell below " + minimum + ".";
+            }
+        };
+    }
+
+}
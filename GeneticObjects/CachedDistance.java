@@ -0,0 +1,83 @@
+package GeneticObjects;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Computes distances on the fly for tables that are too large for a
+ * DistanceMatrix, and remembers recently used distances in a small
+ * direct-mapped cache. The same edges are asked for over and over (by the
+ * local search and the delta evaluations of the operators), so most
+ * lookups hit the cache.
+ * <br/>
+ * Each slot of the cache is a single long holding the float distance in the
+ * low half and a tag in the high half. The pair of cities is mapped to its
+ * slot and tag by a bijection, so a tag match can never return the distance
+ * of another pair. The slots are read and written with opaque access, which
+ * makes each long load and store atomic even on 32-bit JVMs (plain long
+ * stores need not be, JLS 17.7), so threads sharing the oracle see either
+ * the old or the new entry, never a mix of both. Opaque access adds no
+ * fences, so it costs the same as a plain load or store on common hardware.
+ */
+public class CachedDistance implements DistanceOracle {
+
+    private static final int MAX_SLOT_BITS = 18; // 2 MB of cache.
+    private static final long MIX = 0x9E3779B97F4A7C15L; // Odd, so it is a bijection.
+    private static final VarHandle SLOT = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final CityTable table;
+    private final long size;
+    private final long keyMask;
+    private final long tagMask;
+    private final int tagBits;
+    private final long[] slots;
+
+    /**
+     * Constructs the oracle for a table.
+     * @param table     the cities to compute distances for
+     */
+    public CachedDistance (CityTable table) {
+        this.table = table;
+        size = table.size();
+
+        // The number of bits needed to tell every pair of cities apart.
+        int keyBits = Math.max(1, 64 - Long.numberOfLeadingZeros(size * size - 1));
+        int slotBits = Math.min(MAX_SLOT_BITS, keyBits);
+
+        tagBits = keyBits - slotBits;
+        keyMask = (keyBits == 64) ? -1L : (1L << keyBits) - 1;
+        tagMask = (1L << tagBits) - 1;
+
+        // The tag (plus one, so that an empty slot never matches) must fit in 32 bits.
+        slots = (tagBits < 32) ? new long[1 << slotBits] : null;
+    }
+
+    @Override
+    public float distance (int a, int b) {
+
+        if (slots == null) {
+            return table.computeDistance(a, b);
+        }
+
+        // The distances are symmetric, so both directions share one slot.
+        if (a > b) {
+            int temp = a;
+            a = b;
+            b = temp;
+        }
+
+        long hash = ((a * size + b) * MIX) & keyMask;
+        int slot = (int)(hash >>> tagBits);
+        long tag = (hash & tagMask) + 1;
+
+        long entry = (long) SLOT.getOpaque(slots, slot);
+        if ((entry >>> 32) == tag) {
+            return Float.intBitsToFloat((int) entry);
+        }
+
+        float distance = table.computeDistance(a, b);
+        SLOT.setOpaque(slots, slot, (tag << 32) | (Float.floatToRawIntBits(distance) & 0xFFFFFFFFL));
+        return distance;
+    }
+
+}
@@ -1,43 +1,77 @@
 package GeneticObjects;
 
-import java.util.Arrays;
 import java.util.Random;
 
 /**
- * Contains an array of City objects which represents a path through the cities.
+ * Contains an array of city indexes which represents a path through the
+ * cities of a CityTable.
+ * <br/>
+ * Two Chromosomes are equal if they are the same cycle, so a tour is equal
+ * to itself started at another city or travelled backwards. The hash code is
+ * taken from a fingerprint of the set of edges of the tour, which does not
+ * change either way.
  */
 public class Chromosome implements Comparable<Chromosome> {
 
-    private City[] cities;
-    private int distance = -1; // Calculated once then cached.
-    private Random random;
+    private final CityTable table;
+    private final int[] tour;
+    private double length = -1; // Calculated once then cached.
+
+    // The fingerprint of a tour that has not been calculated yet. A tour whose
+    // fingerprint really is 0 just has it calculated again every time.
+    private static final long UNKNOWN = 0;
+
+    // Calculated once then cached. A single volatile field, so that another
+    // thread sees either UNKNOWN or the whole fingerprint, never a mix.
+    private volatile long fingerprint = UNKNOWN;
 
     /**
-     * Construct the Chromosome from an array. The cities are in the same order
-     * as they are in the array. No shuffling is done.
-     * @param cities    the array of City objects for construction
+     * Construct the Chromosome from an array of city indexes. The cities are
+     * in the same order as they are in the array. No shuffling is done.
+     * The array is not copied, so it must not be modified afterwards.
+     * @param table     the cities the indexes refer to
+     * @param tour      the indexes of the cities, in the order they are visited
      */
-    public Chromosome (City[] cities) {
-        this.cities = cities.clone();
+    public Chromosome (CityTable table, int[] tour) {
+        this.table = table;
+        this.tour = tour;
     }
 
     /**
-     * Construct the Chromosome from an array of City objects and shuffle them.
-     * @param cities    the array of City objects for construction
+     * Construct the Chromosome from an array of city indexes whose length is
+     * already known, for example when reading back a saved population.
+     * The array is not copied, so it must not be modified afterwards.
+     * @param table     the cities the indexes refer to
+     * @param tour      the indexes of the cities, in the order they are visited
+     * @param length    the total distance travelled
+     */
+    public Chromosome (CityTable table, int[] tour, double length) {
+        this.table = table;
+        this.tour = tour;
+        this.length = length;
+    }
+
+    /**
+     * Construct the Chromosome from all the cities of a table and shuffle them.
+     * @param table     the cities for construction
      * @param random    the Random object for shuffling the Chromosome
      */
-    public Chromosome (City[] cities, Random random) {
-        this.cities = cities.clone();
-        this.random = random;
-        shuffle();
+    public Chromosome (CityTable table, Random random) {
+        this.table = table;
+        this.tour = new int[table.size()];
+        for (int i = 0; i < tour.length; i++) {
+            tour[i] = i;
+        }
+        shuffle(random);
     }
 
     /**
      * Shuffles the cities in the Chromosome.
+     * @param random    the Random object for shuffling
      */
-    private void shuffle () {
-        for (int i = 0; i < cities.length; i++) {
-            swap(i, random.nextInt(cities.length));
+    private void shuffle (Random random) {
+        for (int i = 0; i < tour.length; i++) {
+            swap(i, random.nextInt(tour.length));
         }
     }
 
@@ -47,13 +81,93 @@ public class Chromosome implements Comparable<Chromosome> {
      * @param j     the index of the second city
      */
     private void swap (int i, int j) {
-        City temp = cities[i];
-        cities[i] = cities[j];
-        cities[j] = temp;
+        int temp = tour[i];
+        tour[i] = tour[j];
+        tour[j] = temp;
+    }
+
+    /**
+     * Construct a Chromosome for a tour that was made from this one by
+     * changing a few of its edges. The length of the new tour is found from
+     * the length of this one and the change in length, instead of adding up
+     * all of its edges again. The array is not copied, so it must not be
+     * modified afterwards.
+     * @param tour      the indexes of the cities of the new tour
+     * @param delta     the length of the new tour minus the length of this one
+     * @return          the Chromosome of the new tour
+     */
+    public Chromosome derive (int[] tour, double delta) {
+        Chromosome chromosome = new Chromosome(table, tour);
+        chromosome.length = getLength() + delta;
+        return chromosome;
+    }
+
+    /**
+     * Same as derive(tour, delta), and also updates the fingerprint of the
+     * tour if the fingerprint of this one is known.
+     * @param tour              the indexes of the cities of the new tour
+     * @param delta             the length of the new tour minus the length of this one
+     * @param fingerprintDelta  the sum of edgeFingerprint over the edges that were
+     *                          added minus the sum over the edges that were removed
+     * @return                  the Chromosome of the new tour
+     */
+    public Chromosome derive (int[] tour, double delta, long fingerprintDelta) {
+        Chromosome chromosome = derive(tour, delta);
+        long known = fingerprint;
+        if (known != UNKNOWN) {
+            chromosome.fingerprint = known + fingerprintDelta;
+        }
+        return chromosome;
+    }
+
+    public CityTable getCityTable () {
+        return table;
     }
 
+    /**
+     * Get the number of cities in the tour.
+     * @return  the length of the tour
+     */
+    public int size () {
+        return tour.length;
+    }
+
+    /**
+     * Get the index (in the CityTable) of the city visited at a position of the tour.
+     * @param position  the position in the tour
+     * @return          the index of the city
+     */
+    public int getCityIndex (int position) {
+        return tour[position];
+    }
+
+    /**
+     * Get a copy of the tour as city indexes.
+     * @return  the indexes of the cities, in the order they are visited
+     */
+    public int[] getTour () {
+        return tour.clone();
+    }
+
+    /**
+     * Get the tour itself rather than a copy, for TourPool.
+     * @return  the array of the tour, which must not be modified
+     */
+    int[] getTourArray () {
+        return tour;
+    }
+
+    /**
+     * Build the City objects of the tour. Only meant for the display and
+     * export code, the algorithm itself works on the city indexes.
+     * @return  the cities, in the order they are visited
+     */
     public City[] getArray () {
-        return cities.clone();
+        City[] cities = new City[tour.length];
+        for (int i = 0; i < tour.length; i++) {
+            cities[i] = table.getCity(tour[i]);
+        }
+        return cities;
     }
 
     @Override
@@ -63,29 +177,74 @@ public class Chromosome implements Comparable<Chromosome> {
 
     @Override
     public int hashCode() {
-        StringBuilder sb = new StringBuilder();
-        for (City city : cities) {
-            sb.append(city);
+        long fingerprint = getFingerprint();
+        return (int)(fingerprint ^ (fingerprint >>> 32));
+    }
+
+    /**
+     * Get a 64-bit fingerprint of the set of edges of the tour: the sum of
+     * edgeFingerprint over all of its edges. A tour started at another city
+     * or travelled backwards has the same edges and so the same fingerprint,
+     * and a move that replaces a few edges changes it by a known amount.
+     * @return  the fingerprint
+     */
+    public long getFingerprint () {
+
+        // If this was already calculated, don't calculate it again.
+        long known = fingerprint;
+        if (known != UNKNOWN) {
+            return known;
         }
-        return (new String(sb)).hashCode();
+
+        long sum = edgeFingerprint(tour[tour.length-1], tour[0]);
+        for (int i = 1; i < tour.length; i++) {
+            sum += edgeFingerprint(tour[i-1], tour[i]);
+        }
+
+        fingerprint = sum;
+        return sum;
+    }
+
+    /**
+     * Get the fingerprint of an undirected edge, a well mixed 64-bit value
+     * that is the same for both directions of the edge.
+     * @param a     the index of the city at one end of the edge
+     * @param b     the index of the city at the other end
+     * @return      the fingerprint of the edge
+     */
+    public static long edgeFingerprint (int a, int b) {
+        long z = (a < b) ? ((long)a << 32 | b) : ((long)b << 32 | a);
+
+        // The finalizer of SplitMix64.
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
     }
 
     public int getDistance () {
+        return (int)getLength();
+    }
+
+    /**
+     * Get the exact length of the tour, which getDistance() truncates.
+     * @return  the total distance travelled
+     */
+    public double getLength () {
 
         // If this was already calculated, don't calculate it again.
-        if (distance != -1) {
-            return distance;
+        if (length != -1) {
+            return length;
         }
 
-       double distanceTravelled = 0;
+        double distanceTravelled = 0;
 
-        for (int i = 1; i < cities.length; i++) {
-            distanceTravelled += City.distance(cities[i-1], cities[i]);
+        for (int i = 1; i < tour.length; i++) {
+            distanceTravelled += table.distance(tour[i-1], tour[i]);
         }
 
-        distanceTravelled += City.distance(cities[cities.length-1], cities[0]);
-        this.distance = (int)distanceTravelled;
-        return distance;
+        distanceTravelled += table.distance(tour[tour.length-1], tour[0]);
+        this.length = distanceTravelled;
+        return length;
     }
 
     @Override
@@ -96,14 +255,48 @@ public class Chromosome implements Comparable<Chromosome> {
 
         Chromosome c = (Chromosome) o;
 
-        return Arrays.equals(c.cities, cities);
+        if (c == this) {
+            return true;
+        }
+        if (c.table != table || c.tour.length != tour.length || c.getFingerprint() != getFingerprint()) {
+            return false;
+        }
+
+        return isSameCycle(c.tour);
+    }
+
+    /**
+     * Check whether another tour visits the cities in the same cycle as this
+     * one, from any starting city and in either direction.
+     * @param other     a tour through the same cities
+     * @return          true if the tours have the same edges
+     */
+    private boolean isSameCycle (int[] other) {
+        int n = tour.length;
+
+        // Find where the other tour visits the first city of this one.
+        int start = 0;
+        while (start < n && other[start] != tour[0]) {
+            start++;
+        }
+        if (start == n) {
+            return false;
+        }
+
+        boolean forward = true;
+        boolean backward = true;
+        for (int i = 1; i < n && (forward || backward); i++) {
+            forward = forward && other[(start + i) % n] == tour[i];
+            backward = backward && other[(start - i + n) % n] == tour[i];
+        }
+        return forward || backward;
     }
 
     @Override
     public String toString () {
         StringBuilder sb = new StringBuilder("[ ");
-        for (City item : cities) {
-            sb.append(item.getName());
+        for (int index : tour) {
+            sb.append(table.getName(index));
             sb.append(" ");
         }
         sb.append("]");
@@ -0,0 +1,144 @@
+package GeneticObjects;
+
+import java.util.Arrays;
+
+/**
+ * A set of Chromosomes used for finding duplicate tours, in place of a
+ * HashSet. The fingerprints of the Chromosomes are kept in a primitive array
+ * next to the Chromosomes themselves (open addressing with linear probing),
+ * so adding does not create an entry object or box anything, and most
+ * lookups of a tour that is not in the set are answered from the
+ * fingerprints alone. The arrays are kept when the set is cleared, so a set
+ * can be reused from one generation to the next without allocating.
+ */
+public class ChromosomeSet {
+
+    private long[] fingerprints;
+    private Chromosome[] chromosomes;   // Null where a slot is empty.
+    private int mask;                   // The capacity minus 1.
+    private int size;
+
+    /**
+     * Construct an empty set with room for some Chromosomes.
+     * @param expectedSize  the number of Chromosomes expected to be added
+     */
+    public ChromosomeSet (int expectedSize) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("Parameter cannot be negative.");
+        }
+
+        // Keep the table at most half full.
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2 - 1)) << 1;
+        fingerprints = new long[capacity];
+        chromosomes = new Chromosome[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Add a Chromosome, unless an equal one is already in the set.
+     * @param chromosome    the Chromosome to add
+     * @return              true if it was added, false if it is a duplicate
+     */
+    public boolean add (Chromosome chromosome) {
+        long fingerprint = chromosome.getFingerprint();
+        int slot = find(chromosome, fingerprint);
+
+        if (chromosomes[slot] != null) {
+            return false;
+        }
+
+        fingerprints[slot] = fingerprint;
+        chromosomes[slot] = chromosome;
+        if (++size * 2 > chromosomes.length) {
+            grow();
+        }
+        return true;
+    }
+
+    /**
+     * Check whether an equal Chromosome is in the set.
+     * @param chromosome    the Chromosome to look for
+     * @return              true if an equal Chromosome was added before
+     */
+    public boolean contains (Chromosome chromosome) {
+        return chromosomes[find(chromosome, chromosome.getFingerprint())] != null;
+    }
+
+    /**
+     * Remove a Chromosome, or one equal to it.
+     * @param chromosome    the Chromosome to remove
+     * @return              true if it was removed, false if it was not in the set
+     */
+    public boolean remove (Chromosome chromosome) {
+        int gap = find(chromosome, chromosome.getFingerprint());
+        if (chromosomes[gap] == null) {
+            return false;
+        }
+
+        // Move the Chromosomes after the gap back into it when they belong
+        // at or before it, so that find still reaches them.
+        int slot = (gap + 1) & mask;
+        while (chromosomes[slot] != null) {
+            int home = (int)(fingerprints[slot] ^ (fingerprints[slot] >>> 32)) & mask;
+            if (((slot - home) & mask) >= ((slot - gap) & mask)) {
+                fingerprints[gap] = fingerprints[slot];
+                chromosomes[gap] = chromosomes[slot];
+                gap = slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        chromosomes[gap] = null;
+        size--;
+        return true;
+    }
+
+    public int size () {
+        return size;
+    }
+
+    /**
+     * Removes all the Chromosomes, keeping the arrays for reuse.
+     */
+    public void clear () {
+        Arrays.fill(chromosomes, null);
+        size = 0;
+    }
+
+    /**
+     * Find the slot of an equal Chromosome, or the empty slot where it would go.
+     */
+    private int find (Chromosome chromosome, long fingerprint) {
+        int slot = (int)(fingerprint ^ (fingerprint >>> 32)) & mask;
+        while (chromosomes[slot] != null) {
+            if (fingerprints[slot] == fingerprint && chromosomes[slot].equals(chromosome)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Doubles the capacity of the table and puts every Chromosome back in.
+     */
+    private void grow () {
+        long[] oldFingerprints = fingerprints;
+        Chromosome[] oldChromosomes = chromosomes;
+
+        fingerprints = new long[oldFingerprints.length * 2];
+        chromosomes = new Chromosome[oldChromosomes.length * 2];
+        mask = chromosomes.length - 1;
+
+        for (int i = 0; i < oldChromosomes.length; i++) {
+            if (oldChromosomes[i] != null) {
+                int slot = (int)(oldFingerprints[i] ^ (oldFingerprints[i] >>> 32)) & mask;
+                while (chromosomes[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                fingerprints[slot] = oldFingerprints[i];
+                chromosomes[slot] = oldChromosomes[i];
+            }
+        }
+    }
+
+}
@@ -0,0 +1,271 @@
+package GeneticObjects;
+
+import java.nio.DoubleBuffer;
+import java.util.Random;
+
+/**
+ * The shared set of cities of a problem instance. Chromosomes only store the
+ * indexes of the cities in this table, so the coordinates are kept once in
+ * primitive buffers instead of once per tour. The buffers either wrap arrays
+ * or, for instances read with IO.BinaryInstance, point straight into a
+ * memory-mapped file. City objects are only built when they are asked for
+ * (for example when drawing a tour to the screen).
+ * Immutable.
+ */
+public class CityTable {
+
+    private final String[] names;   // Null if the cities are simply named 1 to n.
+    private final DoubleBuffer xs, ys;
+    private final int size;
+    private final EdgeWeightType edgeWeightType;
+    private final DistanceOracle distances;
+    private volatile NeighborLists neighborLists; // Built the first time they are needed.
+    private volatile KdTree kdTree;               // Built the first time it is needed.
+
+    /**
+     * Constructs the table from an array of cities. The index of each City
+     * in the array becomes its index in the table. Distances are Euclidean.
+     * @param cities    the cities of the problem instance
+     */
+    public CityTable (City[] cities) {
+        names = new String[cities.length];
+        double[] xs = new double[cities.length];
+        double[] ys = new double[cities.length];
+
+        for (int i = 0; i < cities.length; i++) {
+            names[i] = cities[i].getName();
+            xs[i] = cities[i].getX();
+            ys[i] = cities[i].getY();
+        }
+
+        this.xs = DoubleBuffer.wrap(xs);
+        this.ys = DoubleBuffer.wrap(ys);
+        size = cities.length;
+        edgeWeightType = EdgeWeightType.EUCLIDEAN;
+        distances = DistanceOracle.create(this);
+    }
+
+    /**
+     * Constructs the table from arrays of coordinates. The arrays are not
+     * copied, so they must not be modified afterwards.
+     * @param names             the name of each city, or null to name them 1 to n
+     * @param xs                the x coordinate of each city
+     * @param ys                the y coordinate of each city
+     * @param edgeWeightType    how distances are computed from the coordinates
+     * @param distances         the DistanceOracle to use, or null to pick one
+     *                          for the size of the table (required if the
+     *                          type is EXPLICIT)
+     */
+    public CityTable (String[] names, double[] xs, double[] ys,
+                      EdgeWeightType edgeWeightType, DistanceOracle distances) {
+        this(names, DoubleBuffer.wrap(xs), DoubleBuffer.wrap(ys), edgeWeightType, distances);
+    }
+
+    /**
+     * Constructs the table from buffers of coordinates, which may be direct
+     * or memory-mapped. The buffers are not copied, so they must not be
+     * modified afterwards. The coordinate of city i is at index i of a buffer.
+     * @param names             the name of each city, or null to name them 1 to n
+     * @param xs                the x coordinate of each city
+     * @param ys                the y coordinate of each city
+     * @param edgeWeightType    how distances are computed from the coordinates
+     * @param distances         the DistanceOracle to use, or null to pick one
+     *                          for the size of the table (required if the
+     *                          type is EXPLICIT)
+     */
+    public CityTable (String[] names, DoubleBuffer xs, DoubleBuffer ys,
+                      EdgeWeightType edgeWeightType, DistanceOracle distances) {
+        if (xs.limit() != ys.limit() || (names != null && names.length != xs.limit())) {
+            throw new IllegalArgumentException("All arrays must be of the same length.");
+        }
+        if (distances == null && edgeWeightType == EdgeWeightType.EXPLICIT) {
+            throw new IllegalArgumentException("Explicit distances need a DistanceOracle.");
+        }
+        this.names = names;
+        this.xs = xs;
+        this.ys = ys;
+        this.size = xs.limit();
+        this.edgeWeightType = edgeWeightType;
+        this.distances = (distances == null) ? DistanceOracle.create(this) : distances;
+    }
+
+    /**
+     * Constructs a table that shares the cities of another table but answers
+     * distances with a different oracle.
+     * @param table         the table to share the cities of
+     * @param distances     the DistanceOracle to use
+     * @param neighborLists the nearest neighbors of the cities, or null
+     */
+    private CityTable (CityTable table, DistanceOracle distances, NeighborLists neighborLists) {
+        this.names = table.names;
+        this.xs = table.xs;
+        this.ys = table.ys;
+        this.size = table.size;
+        this.edgeWeightType = table.edgeWeightType;
+        this.distances = distances;
+        this.neighborLists = neighborLists;
+        this.kdTree = table.kdTree;
+    }
+
+    /**
+     * Get a table with the same cities that answers distances with another oracle.
+     * @param distances     the DistanceOracle to use
+     * @return              a new CityTable with the same cities
+     */
+    public CityTable withDistanceOracle (DistanceOracle distances) {
+        if (distances == null) {
+            throw new IllegalArgumentException("Parameter cannot be null.");
+        }
+        return new CityTable(this, distances, null);
+    }
+
+    /**
+     * Get a table with the same cities that starts out with already computed
+     * nearest neighbors (for example read from a file), instead of building
+     * them the first time they are needed.
+     * @param neighborLists     the nearest neighbors of the cities
+     * @return                  a new CityTable with the same cities
+     */
+    public CityTable withNeighborLists (NeighborLists neighborLists) {
+        if (neighborLists == null) {
+            throw new IllegalArgumentException("Parameter cannot be null.");
+        }
+        if (neighborLists.size() != size) {
+            throw new IllegalArgumentException("The lists must be of the cities of the table.");
+        }
+        return new CityTable(this, distances, neighborLists);
+    }
+
+    /**
+     * Get the number of cities in the table.
+     * @return  the number of cities
+     */
+    public int size () {
+        return size;
+    }
+
+    public String getName (int index) {
+        return (names == null) ? String.valueOf(index + 1) : names[index];
+    }
+
+    public double getX (int index) {
+        return xs.get(index);
+    }
+
+    public double getY (int index) {
+        return ys.get(index);
+    }
+
+    public EdgeWeightType getEdgeWeightType () {
+        return edgeWeightType;
+    }
+
+    /**
+     * Build the City found at an index of the table.
+     * @param index     the index of the city
+     * @return          a new City object with the name and location of the city
+     */
+    public City getCity (int index) {
+        return new City(getName(index), (int)getX(index), (int)getY(index));
+    }
+
+    /**
+     * Build all the cities of the table, in the order of the table.
+     * @return  a new array of City objects
+     */
+    public City[] getCities () {
+        City[] cities = new City[size()];
+        for (int i = 0; i < cities.length; i++) {
+            cities[i] = getCity(i);
+        }
+        return cities;
+    }
+
+    /**
+     * Get the distance between two cities of the table from its DistanceOracle.
+     * @param a     the index of the first city
+     * @param b     the index of the second city
+     * @return      the distance
+     */
+    public float distance (int a, int b) {
+        return distances.distance(a, b);
+    }
+
+    /**
+     * Get the nearest neighbors of every city. The lists are built the first
+     * time they are asked for and then shared by everyone using the table.
+     * @param k     the number of neighbors needed per city
+     * @return      NeighborLists with at least k neighbors per city (or all
+     *              the other cities, if there are not that many)
+     */
+    public NeighborLists getNeighborLists (int k) {
+        // Only take the lock when the lists have to be built, since every
+        // thread running a local search asks for them for every tour.
+        NeighborLists lists = neighborLists;
+        if (lists == null || lists.getK() < Math.min(k, size() - 1)) {
+            synchronized (this) {
+                lists = neighborLists;
+                if (lists == null || lists.getK() < Math.min(k, size() - 1)) {
+                    lists = new NeighborLists(this, k);
+                    neighborLists = lists;
+                }
+            }
+        }
+        return lists;
+    }
+
+    /**
+     * Get the k-d tree of the coordinates of the cities, which is built the
+     * first time it is asked for and then shared.
+     * @return  the KdTree of the table
+     */
+    public KdTree getKdTree () {
+        if (edgeWeightType == EdgeWeightType.EXPLICIT) {
+            throw new IllegalStateException("The cities of explicit distances have no coordinates.");
+        }
+        KdTree tree = kdTree;
+        if (tree == null) {
+            synchronized (this) {
+                tree = kdTree;
+                if (tree == null) {
+                    tree = new KdTree(this);
+                    kdTree = tree;
+                }
+            }
+        }
+        return tree;
+    }
+
+    /**
+     * Computes the distance between two cities of the table from their
+     * coordinates, according to the EdgeWeightType of the table. This is
+     * what the DistanceOracle is built from; everything else should call
+     * distance(a, b) instead.
+     * @param a     the index of the first city
+     * @param b     the index of the second city
+     * @return      the distance
+     */
+    public float computeDistance (int a, int b) {
+        if (edgeWeightType == EdgeWeightType.EXPLICIT) {
+            return distances.distance(a, b);
+        }
+        return edgeWeightType.distance(xs.get(a), ys.get(a), xs.get(b), ys.get(b));
+    }
+
+    /**
+     * Create a table of cities with random names and random locations.
+     * @param numOfCities   the number of cities
+     * @param random        the Random object to be used for the generation
+     * @return              a randomly generated CityTable
+     */
+    public static CityTable getRandomTable (int numOfCities, Random random) {
+        City[] cities = new City[numOfCities];
+
+        for (int i = 0; i < numOfCities; i++) {
+            cities[i] = City.getRandomCity(random);
+        }
+
+        return new CityTable(cities);
+    }
+
+}
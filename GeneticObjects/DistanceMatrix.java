@@ -0,0 +1,50 @@
+package GeneticObjects;
+
+/**
+ * Precomputes the distance between every pair of cities, so that finding a
+ * distance is a single array lookup. Uses n * n floats of memory.
+ * Immutable.
+ */
+public class DistanceMatrix implements DistanceOracle {
+
+    private final int size;
+    private final float[] matrix;
+
+    /**
+     * Computes the matrix from the coordinates of the cities in a table.
+     * @param table     the cities to compute the distances of
+     */
+    public DistanceMatrix (CityTable table) {
+        size = table.size();
+        matrix = new float[size * size];
+
+        // The distances are symmetric, so only compute half of them.
+        for (int a = 0; a < size; a++) {
+            for (int b = a + 1; b < size; b++) {
+                float distance = table.computeDistance(a, b);
+                matrix[a * size + b] = distance;
+                matrix[b * size + a] = distance;
+            }
+        }
+    }
+
+    /**
+     * Constructs the matrix from distances that are already known, such as
+     * the explicit weights of a TSPLIB file. The array is not copied.
+     * @param size      the number of cities
+     * @param matrix    the distance from city a to city b at index a*size+b
+     */
+    public DistanceMatrix (int size, float[] matrix) {
+        if (matrix.length != size * size) {
+            throw new IllegalArgumentException("Matrix must have size*size elements.");
+        }
+        this.size = size;
+        this.matrix = matrix;
+    }
+
+    @Override
+    public float distance (int a, int b) {
+        return matrix[a * size + b];
+    }
+
+}
@@ -0,0 +1,48 @@
+package GeneticObjects;
+
+/**
+ * Answers the distance between two cities of a CityTable. The Chromosomes and
+ * the genetic operators only ask the oracle, so how the distances are found
+ * (a lookup in a precomputed matrix, or computed on the fly) can be swapped
+ * without touching them.
+ * <br/>
+ * Distances are always returned as floats and tour lengths are summed in
+ * doubles. When every distance is a whole number, as it is for the rounded
+ * TSPLIB types (EUC_2D, CEIL_2D, ATT and GEO), the sums are exact, so the
+ * length of a tour does not depend on the order its edges are added in and
+ * a length found from deltas (see Chromosome.derive) is the same as adding
+ * up the edges again. Fractional distances, such as EUCLIDEAN ones, are
+ * rounded as they are added, so those lengths can differ in the last bits,
+ * and a length that is close to a whole number can even be truncated by
+ * getDistance to the number below it one way and not the other.
+ */
+public interface DistanceOracle {
+
+    /**
+     * Above this many cities a dense matrix would not fit comfortably in the
+     * heap (4096 cities is already 64 MB), so distances are computed on the fly.
+     */
+    int MAX_MATRIX_CITIES = 4_096;
+
+    /**
+     * Get the distance between two cities.
+     * @param a     the index of the first city
+     * @param b     the index of the second city
+     * @return      the distance
+     */
+    float distance (int a, int b);
+
+    /**
+     * Choose the oracle best suited for the size of a table: a precomputed
+     * matrix for small tables and a cached on the fly oracle for large ones.
+     * @param table     the cities to answer distances for
+     * @return          the DistanceOracle for the table
+     */
+    static DistanceOracle create (CityTable table) {
+        if (table.size() <= MAX_MATRIX_CITIES) {
+            return new DistanceMatrix(table);
+        }
+        return new CachedDistance(table);
+    }
+
+}
@@ -0,0 +1,137 @@
+package GeneticObjects;
+
+/**
+ * How the distance between two cities is found from their coordinates, as
+ * given by the EDGE_WEIGHT_TYPE of a TSPLIB file. The TSPLIB types round
+ * their distances to integers exactly as the TSPLIB documentation describes,
+ * so the known optimal tour lengths of its instances can be compared against.
+ */
+public enum EdgeWeightType {
+
+    /**
+     * Plain Euclidean distance, not rounded. Used by the randomly generated cities.
+     */
+    EUCLIDEAN {
+        @Override
+        public float distance (double x1, double y1, double x2, double y2) {
+            double xDiff = x2 - x1;
+            double yDiff = y2 - y1;
+            return (float)Math.sqrt(xDiff*xDiff + yDiff*yDiff);
+        }
+    },
+
+    /**
+     * Euclidean distance rounded to the nearest integer.
+     */
+    EUC_2D {
+        @Override
+        public float distance (double x1, double y1, double x2, double y2) {
+            double xDiff = x2 - x1;
+            double yDiff = y2 - y1;
+            return nint(Math.sqrt(xDiff*xDiff + yDiff*yDiff));
+        }
+    },
+
+    /**
+     * Euclidean distance rounded up to the next integer.
+     */
+    CEIL_2D {
+        @Override
+        public float distance (double x1, double y1, double x2, double y2) {
+            double xDiff = x2 - x1;
+            double yDiff = y2 - y1;
+            return (float)Math.ceil(Math.sqrt(xDiff*xDiff + yDiff*yDiff));
+        }
+    },
+
+    /**
+     * Pseudo-Euclidean distance of the att48 and att532 instances.
+     */
+    ATT {
+        @Override
+        public float distance (double x1, double y1, double x2, double y2) {
+            double xDiff = x2 - x1;
+            double yDiff = y2 - y1;
+            double r = Math.sqrt((xDiff*xDiff + yDiff*yDiff) / 10.0);
+            int t = nint(r);
+            return (t < r) ? t + 1 : t;
+        }
+    },
+
+    /**
+     * Geographical distance in kilometers. The coordinates are the latitude
+     * (x) and the longitude (y) in DDD.MM format, degrees and minutes.
+     */
+    GEO {
+        @Override
+        public float distance (double x1, double y1, double x2, double y2) {
+            double latitude1 = toRadians(x1);
+            double longitude1 = toRadians(y1);
+            double latitude2 = toRadians(x2);
+            double longitude2 = toRadians(y2);
+            double q1 = Math.cos(longitude1 - longitude2);
+            double q2 = Math.cos(latitude1 - latitude2);
+            double q3 = Math.cos(latitude1 + latitude2);
+            return (int)(EARTH_RADIUS * Math.acos(0.5*((1.0+q1)*q2 - (1.0-q1)*q3)) + 1.0);
+        }
+    },
+
+    /**
+     * The distances are listed explicitly (for example in the
+     * EDGE_WEIGHT_SECTION of a TSPLIB file) and can not be computed from
+     * the coordinates.
+     */
+    EXPLICIT {
+        @Override
+        public float distance (double x1, double y1, double x2, double y2) {
+            throw new UnsupportedOperationException("Explicit distances can not be computed from coordinates.");
+        }
+    };
+
+    // The values used by the TSPLIB definition of GEO distances.
+    private static final double PI = 3.141592;
+    private static final double EARTH_RADIUS = 6378.388;
+
+    /**
+     * Computes the distance between two points.
+     * @param x1    the x coordinate of the first point
+     * @param y1    the y coordinate of the first point
+     * @param x2    the x coordinate of the second point
+     * @param y2    the y coordinate of the second point
+     * @return      the distance
+     */
+    public abstract float distance (double x1, double y1, double x2, double y2);
+
+    /**
+     * Check whether the distance never gets shorter as the straight line
+     * distance between the coordinates gets longer. If so, the nearest
+     * cities by straight line distance (for example from a KdTree) are also
+     * the nearest cities by this distance, apart from the order of cities
+     * whose distances round to the same value.
+     * @return  true for the Euclidean types, false for GEO and EXPLICIT
+     */
+    public boolean growsWithEuclideanDistance () {
+        return this != GEO && this != EXPLICIT;
+    }
+
+    /**
+     * Rounds to the nearest integer, the way TSPLIB does.
+     * @param x     the value to round
+     * @return      the nearest integer
+     */
+    private static int nint (double x) {
+        return (int)(x + 0.5);
+    }
+
+    /**
+     * Converts a coordinate in DDD.MM format to radians, the way TSPLIB does.
+     * @param coordinate    degrees, with the minutes after the decimal point
+     * @return              the coordinate in radians
+     */
+    private static double toRadians (double coordinate) {
+        int degrees = (int)coordinate;
+        double minutes = coordinate - degrees;
+        return PI * (degrees + 5.0 * minutes / 3.0) / 180.0;
+    }
+
+}
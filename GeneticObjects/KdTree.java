@@ -0,0 +1,447 @@
+package GeneticObjects;
+
+/**
+ * A k-d tree over the coordinates of the cities of a CityTable, for finding
+ * the nearest cities of a point without looking at every city. Built in
+ * O(n log n) by splitting the cities at the median of the axis along which
+ * they are most spread out, then splitting each half again, down to small
+ * buckets of cities that are searched one by one.
+ * <br/>
+ * The tree is stored implicitly in flat arrays in tree order: the cities of
+ * a subtree are the range [from, to) of the arrays and the city it is split
+ * at is in the middle of the range, with the cities on the low side of the
+ * split before it and the others after it. The coordinates are copied into
+ * the same order, so a search reads memory mostly in order.
+ * <br/>
+ * The tree finds the nearest cities by straight line distance, which gives
+ * the nearest cities by the distance of the table as well when that distance
+ * only ever grows with the straight line distance
+ * (see EdgeWeightType.growsWithEuclideanDistance).
+ * Immutable, so it can be searched by several threads at once.
+ */
+public class KdTree {
+
+    // Subtrees of at most this many cities are searched one city at a time.
+    private static final int BUCKET_SIZE = 8;
+
+    private final int[] cities;         // The index in the table of each city, in tree order.
+    private final double[] xs;
+    private final double[] ys;
+    private final boolean[] splitOnX;   // For the city a subtree is split at, the axis of the split.
+    private final int[] positions;      // The index in tree order of each city of the table.
+
+    /**
+     * Builds the tree of all the cities of a table.
+     * @param table     the cities
+     */
+    public KdTree (CityTable table) {
+        int size = table.size();
+        cities = new int[size];
+        xs = new double[size];
+        ys = new double[size];
+        splitOnX = new boolean[size];
+        positions = new int[size];
+
+        for (int i = 0; i < size; i++) {
+            cities[i] = i;
+            xs[i] = table.getX(i);
+            ys[i] = table.getY(i);
+        }
+
+        build(0, size);
+
+        for (int i = 0; i < size; i++) {
+            positions[cities[i]] = i;
+        }
+    }
+
+    private void build (int from, int to) {
+        if (to - from <= BUCKET_SIZE) {
+            return;
+        }
+
+        double minX = Double.POSITIVE_INFINITY, maxX = Double.NEGATIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (int i = from; i < to; i++) {
+            minX = Math.min(minX, xs[i]);
+            maxX = Math.max(maxX, xs[i]);
+            minY = Math.min(minY, ys[i]);
+            maxY = Math.max(maxY, ys[i]);
+        }
+
+        int middle = (from + to) >>> 1;
+        boolean onX = (maxX - minX >= maxY - minY);
+        select(from, to - 1, middle, onX ? xs : ys);
+        splitOnX[middle] = onX;
+
+        build(from, middle);
+        build(middle + 1, to);
+    }
+
+    /**
+     * Puts the city with the k-th smallest coordinate at index k, with the
+     * smaller ones before it and the larger ones after it (quickselect).
+     * @param left          the first index of the range
+     * @param right         the last index of the range
+     * @param k             the index to put in place
+     * @param coordinates   the coordinates to order by, xs or ys
+     */
+    private void select (int left, int right, int k, double[] coordinates) {
+        while (right > left) {
+            // Median of three, so that sorted input does not take quadratic time.
+            int middle = (left + right) >>> 1;
+            if (coordinates[middle] < coordinates[left]) swap(left, middle);
+            if (coordinates[right] < coordinates[left]) swap(left, right);
+            if (coordinates[right] < coordinates[middle]) swap(middle, right);
+            double pivot = coordinates[middle];
+
+            int i = left, j = right;
+            while (i <= j) {
+                while (coordinates[i] < pivot) i++;
+                while (coordinates[j] > pivot) j--;
+                if (i <= j) {
+                    swap(i++, j--);
+                }
+            }
+
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void swap (int i, int j) {
+        int city = cities[i];
+        cities[i] = cities[j];
+        cities[j] = city;
+        double x = xs[i];
+        xs[i] = xs[j];
+        xs[j] = x;
+        double y = ys[i];
+        ys[i] = ys[j];
+        ys[j] = y;
+    }
+
+    /**
+     * Get the number of cities in the tree.
+     * @return  the number of cities
+     */
+    public int size () {
+        return cities.length;
+    }
+
+    /**
+     * Finds the cities nearest to a point, closest first.
+     * @param x         the x coordinate of the point
+     * @param y         the y coordinate of the point
+     * @param k         the number of cities to find
+     * @param exclude   a city to leave out (the city at the point), or -1
+     * @param result    the array to put the cities in, at least k long
+     * @return          the number of cities found, k unless there are fewer cities
+     */
+    public int nearest (double x, double y, int k, int exclude, int[] result) {
+        if (k < 1 || result.length < k) {
+            throw new IllegalArgumentException("The result must have room for k > 0 cities.");
+        }
+        Search search = new Search(k);
+        search.run(x, y, exclude);
+        return search.drain(result, 0);
+    }
+
+    /**
+     * Finds the k nearest cities of every city, for NeighborLists.
+     * @param k     the number of neighbors per city, less than the number of cities
+     * @return      the neighbors of city c, closest first, at indexes c*k to c*k+k-1
+     */
+    int[] nearestOfEach (int k) {
+        int[] neighbors = new int[cities.length * k];
+        Search search = new Search(k);
+        for (int i = 0; i < cities.length; i++) {
+            search.run(xs[i], ys[i], cities[i]);
+            search.drain(neighbors, cities[i] * k);
+        }
+        return neighbors;
+    }
+
+    /**
+     * Get a set of all the cities of the tree, from which cities can be
+     * taken out one at a time while looking for the nearest one left, as
+     * when building a tour by always going to the nearest unvisited city.
+     * @return  a new set of all the cities
+     */
+    public UnvisitedCities unvisitedCities () {
+        return new UnvisitedCities();
+    }
+
+    /**
+     * The cities of the tree that have not been visited yet. Each subtree
+     * keeps count of its unvisited cities, so a search skips the subtrees
+     * that are all visited and finding the nearest unvisited city stays
+     * O(log n) on average until the end, instead of slowing down as the
+     * cities run out. The count of a subtree is kept at the index of the
+     * city it is split at, or at its first index for a bucket. Not thread
+     * safe; each tour being built needs its own set.
+     */
+    public class UnvisitedCities {
+
+        private final boolean[] visited;    // By index in tree order.
+        private final int[] counts;
+        private int left;
+
+        private double x, y;
+        private int best;
+        private double bestDistance;
+
+        private UnvisitedCities () {
+            visited = new boolean[cities.length];
+            counts = new int[cities.length];
+            left = cities.length;
+            count(0, cities.length);
+        }
+
+        private int count (int from, int to) {
+            if (to - from <= BUCKET_SIZE) {
+                if (to > from) counts[from] = to - from;
+                return to - from;
+            }
+            int middle = (from + to) >>> 1;
+            counts[middle] = 1 + count(from, middle) + count(middle + 1, to);
+            return counts[middle];
+        }
+
+        /**
+         * Get the number of cities not visited yet.
+         * @return  the number of unvisited cities
+         */
+        public int size () {
+            return left;
+        }
+
+        /**
+         * Mark a city as visited, unless it already is.
+         * @param city  the index of the city in the table
+         */
+        public void visit (int city) {
+            int position = positions[city];
+            if (visited[position]) {
+                return;
+            }
+            visited[position] = true;
+            left--;
+
+            int from = 0, to = cities.length;
+            while (true) {
+                if (to - from <= BUCKET_SIZE) {
+                    counts[from]--;
+                    return;
+                }
+                int middle = (from + to) >>> 1;
+                counts[middle]--;
+                if (position == middle) {
+                    return;
+                } else if (position < middle) {
+                    to = middle;
+                } else {
+                    from = middle + 1;
+                }
+            }
+        }
+
+        /**
+         * Find the unvisited city nearest to a city.
+         * @param city  the index of the city in the table
+         * @return      the index of the nearest unvisited city, or -1 if there is none
+         */
+        public int nearest (int city) {
+            int position = positions[city];
+            return nearest(xs[position], ys[position]);
+        }
+
+        /**
+         * Find the unvisited city nearest to a point.
+         * @param x     the x coordinate of the point
+         * @param y     the y coordinate of the point
+         * @return      the index of the nearest unvisited city, or -1 if there is none
+         */
+        public int nearest (double x, double y) {
+            this.x = x;
+            this.y = y;
+            best = -1;
+            bestDistance = Double.POSITIVE_INFINITY;
+            search(0, cities.length);
+            return best;
+        }
+
+        private void search (int from, int to) {
+            if (to - from <= BUCKET_SIZE) {
+                if (to > from && counts[from] > 0) {
+                    for (int i = from; i < to; i++) {
+                        consider(i);
+                    }
+                }
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            if (counts[middle] == 0) {
+                return;
+            }
+            consider(middle);
+
+            double difference = splitOnX[middle] ? x - xs[middle] : y - ys[middle];
+            if (difference < 0) {
+                search(from, middle);
+                if (difference * difference < bestDistance) search(middle + 1, to);
+            } else {
+                search(middle + 1, to);
+                if (difference * difference < bestDistance) search(from, middle);
+            }
+        }
+
+        private void consider (int i) {
+            if (visited[i]) {
+                return;
+            }
+            double xDiff = xs[i] - x;
+            double yDiff = ys[i] - y;
+            double distance = xDiff*xDiff + yDiff*yDiff;
+            if (distance < bestDistance) {
+                best = cities[i];
+                bestDistance = distance;
+            }
+        }
+    }
+
+    /**
+     * One search for the nearest cities of a point. The closest cities found
+     * so far are kept in a max-heap of squared distances, so the farthest of
+     * them, which a subtree has to beat to be searched, is always on top.
+     * Can be run again for another point.
+     */
+    private class Search {
+
+        private final int[] heap;
+        private final double[] heapDistances;
+        private int count;
+
+        private double x, y;
+        private int exclude;
+
+        Search (int k) {
+            heap = new int[k];
+            heapDistances = new double[k];
+        }
+
+        void run (double x, double y, int exclude) {
+            this.x = x;
+            this.y = y;
+            this.exclude = exclude;
+            count = 0;
+            search(0, cities.length);
+        }
+
+        private void search (int from, int to) {
+            if (to - from <= BUCKET_SIZE) {
+                for (int i = from; i < to; i++) {
+                    consider(i);
+                }
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            consider(middle);
+
+            double difference = splitOnX[middle] ? x - xs[middle] : y - ys[middle];
+            if (difference < 0) {
+                search(from, middle);
+                if (difference * difference < worst()) search(middle + 1, to);
+            } else {
+                search(middle + 1, to);
+                if (difference * difference < worst()) search(from, middle);
+            }
+        }
+
+        /**
+         * Get the squared distance a city has to beat to be kept.
+         */
+        private double worst () {
+            return (count < heap.length) ? Double.POSITIVE_INFINITY : heapDistances[0];
+        }
+
+        private void consider (int i) {
+            if (cities[i] == exclude) {
+                return;
+            }
+            double xDiff = xs[i] - x;
+            double yDiff = ys[i] - y;
+            double distance = xDiff*xDiff + yDiff*yDiff;
+
+            if (count < heap.length) {
+                heap[count] = cities[i];
+                heapDistances[count] = distance;
+                siftUp(count++);
+            } else if (distance < heapDistances[0]) {
+                heap[0] = cities[i];
+                heapDistances[0] = distance;
+                siftDown(count);
+            }
+        }
+
+        /**
+         * Empties the heap into an array, closest city first.
+         * @return  the number of cities put in the array
+         */
+        int drain (int[] into, int offset) {
+            int found = count;
+            for (int i = count - 1; i >= 0; i--) {
+                into[offset + i] = heap[0];
+                heap[0] = heap[i];
+                heapDistances[0] = heapDistances[i];
+                siftDown(i);
+            }
+            count = 0;
+            return found;
+        }
+
+        private void siftUp (int i) {
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (heapDistances[parent] >= heapDistances[i]) {
+                    return;
+                }
+                swapInHeap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown (int size) {
+            int i = 0;
+            while (true) {
+                int largest = i;
+                int left = 2 * i + 1;
+                int right = left + 1;
+                if (left < size && heapDistances[left] > heapDistances[largest]) largest = left;
+                if (right < size && heapDistances[right] > heapDistances[largest]) largest = right;
+                if (largest == i) {
+                    return;
+                }
+                swapInHeap(i, largest);
+                i = largest;
+            }
+        }
+
+        private void swapInHeap (int i, int j) {
+            int city = heap[i];
+            heap[i] = heap[j];
+            heap[j] = city;
+            double distance = heapDistances[i];
+            heapDistances[i] = heapDistances[j];
+            heapDistances[j] = distance;
+        }
+    }
+
+}
@@ -0,0 +1,167 @@
+package GeneticObjects;
+
+import java.nio.IntBuffer;
+
+/**
+ * The k nearest cities of every city of a CityTable, closest first. Used as
+ * candidate lists by operators that only look at moves between nearby
+ * cities. The lists are stored in a single primitive buffer, the neighbors of
+ * city c are at indexes c*k to c*k+k-1. The buffer may be memory-mapped from
+ * a file written by IO.BinaryInstance.
+ * Immutable.
+ */
+public class NeighborLists {
+
+    private final int k;
+    private final int size;
+    private final IntBuffer neighbors;
+
+    /**
+     * Finds the k nearest cities of every city of a table. When the distance
+     * of the table grows with the straight line distance, the cities are
+     * found with the KdTree of the table in O(n log n). Otherwise (GEO and
+     * EXPLICIT distances) every pair of cities is looked at, which is O(n^2).
+     * @param table     the cities
+     * @param k         the number of neighbors per city (reduced if there are
+     *                  not enough cities)
+     */
+    public NeighborLists (CityTable table, int k) {
+        if (k < 1) {
+            throw new IllegalArgumentException("K must be greater than 0.");
+        }
+
+        size = table.size();
+        this.k = Math.min(k, size - 1);
+
+        if (this.k < 1) {
+            neighbors = IntBuffer.allocate(0);
+        } else if (table.getEdgeWeightType().growsWithEuclideanDistance()) {
+            neighbors = IntBuffer.wrap(table.getKdTree().nearestOfEach(this.k));
+        } else {
+            neighbors = IntBuffer.wrap(findByComparingAll(table, this.k));
+        }
+    }
+
+    /**
+     * Finds the k nearest cities of every city by looking at every other city.
+     * @param table     the cities
+     * @param k         the number of neighbors per city, less than the number of cities
+     * @return          the neighbors of city c at indexes c*k to c*k+k-1
+     */
+    private static int[] findByComparingAll (CityTable table, int k) {
+        int size = table.size();
+        int[] neighbors = new int[size * k];
+
+        int[] heap = new int[k];
+        float[] heapDistances = new float[k];
+
+        for (int city = 0; city < size; city++) {
+            int count = 0;
+
+            // Keep the k closest cities found so far in a max-heap.
+            for (int other = 0; other < size; other++) {
+                if (other == city) {
+                    continue;
+                }
+                float distance = table.distance(city, other);
+                if (count < k) {
+                    heap[count] = other;
+                    heapDistances[count] = distance;
+                    siftUp(heap, heapDistances, count++);
+                } else if (distance < heapDistances[0]) {
+                    heap[0] = other;
+                    heapDistances[0] = distance;
+                    siftDown(heap, heapDistances, count);
+                }
+            }
+
+            // Empty the heap from the farthest to the closest.
+            for (int i = count - 1; i >= 0; i--) {
+                neighbors[city * k + i] = heap[0];
+                heap[0] = heap[i];
+                heapDistances[0] = heapDistances[i];
+                siftDown(heap, heapDistances, i);
+            }
+        }
+
+        return neighbors;
+    }
+
+    /**
+     * Wraps lists that were found before, for example read from a file. The
+     * buffer is not copied, so it must not be modified afterwards.
+     * @param k             the number of neighbors per city
+     * @param neighbors     the k neighbors of every city, closest first
+     */
+    public NeighborLists (int k, IntBuffer neighbors) {
+        if (k < 1 || neighbors.limit() % k != 0) {
+            throw new IllegalArgumentException("The buffer must hold k neighbors per city.");
+        }
+        this.k = k;
+        this.size = neighbors.limit() / k;
+        this.neighbors = neighbors;
+    }
+
+    /**
+     * Get the number of cities the lists are of.
+     * @return  the number of cities
+     */
+    public int size () {
+        return size;
+    }
+
+    /**
+     * Get the number of neighbors of each city.
+     * @return  k
+     */
+    public int getK () {
+        return k;
+    }
+
+    /**
+     * Get one of the nearest cities of a city.
+     * @param city  the index of the city
+     * @param i     0 for the closest city, 1 for the second closest, and so on
+     * @return      the index of the neighbor
+     */
+    public int get (int city, int i) {
+        return neighbors.get(city * k + i);
+    }
+
+    private static void siftUp (int[] heap, float[] distances, int i) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (distances[parent] >= distances[i]) {
+                return;
+            }
+            swap(heap, distances, i, parent);
+            i = parent;
+        }
+    }
+
+    private static void siftDown (int[] heap, float[] distances, int size) {
+        int i = 0;
+        while (true) {
+            int largest = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < size && distances[left] > distances[largest]) largest = left;
+            if (right < size && distances[right] > distances[largest]) largest = right;
+            if (largest == i) {
+                return;
+            }
+            swap(heap, distances, i, largest);
+            i = largest;
+        }
+    }
+
+    private static void swap (int[] heap, float[] distances, int i, int j) {
+        int temp = heap[i];
+        heap[i] = heap[j];
+        heap[j] = temp;
+        float tempDistance = distances[i];
+        distances[i] = distances[j];
+        distances[j] = tempDistance;
+    }
+
+}
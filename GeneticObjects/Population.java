@@ -3,18 +3,23 @@ package GeneticObjects;
 import IO.Import.DataSet;
 
 import java.nio.BufferOverflowException;
-import java.util.HashSet;
+import java.util.Arrays;
 import java.util.Iterator;
-import java.util.PriorityQueue;
+import java.util.NoSuchElementException;
 import java.util.Random;
 
 /**
- * Represents a Population of chromosomes.
+ * Represents a Population of chromosomes. The chromosomes are kept in an
+ * array in the order they were added, so any of them can be picked by index
+ * in constant time. They are only put in order of fitness when a caller asks
+ * for it (see sort()).
  */
 public class Population implements Iterable<Chromosome> {
 
-    private PriorityQueue<Chromosome> chromosomes;
+    private Chromosome[] chromosomes;
+    private int size;
     private int maxSize;
+    private Chromosome mostFit; // Found once then cached, until the Population changes.
 
     /**
      * Constructs an empty population with a maximum size.
@@ -22,7 +27,7 @@ public class Population implements Iterable<Chromosome> {
      */
     public Population (int maxSize) {
         this.maxSize = maxSize;
-        chromosomes = new PriorityQueue<>();
+        chromosomes = new Chromosome[maxSize];
     }
 
     /**
@@ -30,52 +35,231 @@ public class Population implements Iterable<Chromosome> {
      * @param chromosome        the chromosome to add
      */
     public void add (Chromosome chromosome) {
-        if (chromosomes.size() == maxSize) {
+        if (size == maxSize) {
             throw new BufferOverflowException();
         }
-        chromosomes.add(chromosome);
+        chromosomes[size++] = chromosome;
+        mostFit = null;
     }
 
-    public void populate (City[] cities, Random random) {
+    /**
+     * Adds all the Chromosomes of an array to the Population at once.
+     * @param array     the chromosomes to add
+     */
+    public void addAll (Chromosome[] array) {
+        if (size + array.length > maxSize) {
+            throw new BufferOverflowException();
+        }
+        System.arraycopy(array, 0, chromosomes, size, array.length);
+        size += array.length;
+        mostFit = null;
+    }
+
+    /**
+     * Get the Chromosome at an index of the Population.
+     * @param index     the index, from 0 to size()-1
+     * @return          the Chromosome
+     */
+    public Chromosome get (int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return chromosomes[index];
+    }
+
+    /**
+     * Replace the Chromosome at an index of the Population.
+     * @param index         the index, from 0 to size()-1
+     * @param chromosome    the new Chromosome
+     */
+    public void set (int index, Chromosome chromosome) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        chromosomes[index] = chromosome;
+        mostFit = null;
+    }
+
+    /**
+     * Puts the Chromosomes in order from the most fit to the least fit, so
+     * that get(0) is the most fit, get(1) the second most fit, and so on.
+     */
+    public void sort () {
+        Arrays.sort(chromosomes, 0, size);
+    }
+
+    /**
+     * Moves the k most fit Chromosomes to the front of the Population, so
+     * that get(0) to get(k-1) are the k most fit and get(0) is the most fit
+     * of all. Unlike sort, the rest of the front and the back are left in no
+     * particular order, which only takes O(n) on average (quickselect) and
+     * does not allocate anything.
+     * @param k     the number of Chromosomes to move to the front
+     */
+    public void moveMostFitToFront (int k) {
+        if (k < 0 || k > size) {
+            throw new IllegalArgumentException("Cannot move " + k + " of " + size + " Chromosomes.");
+        }
+        if (k == 0) {
+            return;
+        }
+
+        select(0, size - 1, k - 1);
+
+        int best = 0;
+        for (int i = 1; i < k; i++) {
+            if (chromosomes[i].getDistance() < chromosomes[best].getDistance()) {
+                best = i;
+            }
+        }
+        swap(0, best);
+        mostFit = chromosomes[0];
+    }
+
+    /**
+     * Puts the k-th most fit Chromosome at index k, with the fitter ones
+     * before it and the others after it.
+     * @param left      the first index of the range
+     * @param right     the last index of the range
+     * @param k         the index to put in place
+     */
+    private void select (int left, int right, int k) {
+        while (right > left) {
+            // Median of three, so that a sorted Population does not take quadratic time.
+            int middle = (left + right) >>> 1;
+            if (distance(middle) < distance(left)) swap(left, middle);
+            if (distance(right) < distance(left)) swap(left, right);
+            if (distance(right) < distance(middle)) swap(middle, right);
+            int pivot = distance(middle);
+
+            int i = left, j = right;
+            while (i <= j) {
+                while (distance(i) < pivot) i++;
+                while (distance(j) > pivot) j--;
+                if (i <= j) {
+                    swap(i++, j--);
+                }
+            }
+
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private int distance (int index) {
+        return chromosomes[index].getDistance();
+    }
+
+    private void swap (int i, int j) {
+        Chromosome chromosome = chromosomes[i];
+        chromosomes[i] = chromosomes[j];
+        chromosomes[j] = chromosome;
+    }
+
+    public void populate (CityTable cities, Random random) {
+        populate(cities, random, 0);
+    }
+
+    /**
+     * Fills the Population with unique tours, some of them built by the
+     * heuristics of TourConstruction and the rest randomly shuffled, so the
+     * search starts from good tours but keeps the variety of random ones.
+     * One seeded tour is the greedy edge tour, one follows a space-filling
+     * curve (unless the distances are EXPLICIT), and the others are nearest
+     * neighbor tours from random starting cities. The seeded tours are built
+     * in parallel, on the common ForkJoinPool. Seeded tours that turn out to
+     * be the same are only added once.
+     * @param cities            the cities
+     * @param random            the Random object used for the starting cities and shuffling
+     * @param seededFraction    the fraction of the tours to build with heuristics, from 0 to 1
+     */
+    public void populate (CityTable cities, Random random, double seededFraction) {
 
-        if (chromosomes.size() == maxSize) {
+        if (size == maxSize) {
             throw new BufferOverflowException();
         }
+        if (seededFraction < 0 || seededFraction > 1) {
+            throw new IllegalArgumentException("Parameter must be between 1 and 0 inclusive.");
+        }
+
+        int numOfCities = cities.size();
 
-        // If the popSize is greater than the factorial of cities, uniqueness not possible.
-        // Example: if there are 2 cities but the population size is 100, it is impossible
-        // to have all unique values since there are at most 2! = 2 unique possibilities.
-        if ((cities.length == 1 && maxSize > 1) ||
-                (cities.length == 2 && maxSize > 2) ||
-                (cities.length == 3 && maxSize > 6) ||
-                (cities.length == 4 && maxSize > 24) ||
-                (cities.length == 5 && maxSize > 120) ||
-                (cities.length == 6 && maxSize > 720) ||
-                (cities.length == 7 && maxSize > 5_040) ||
-                (cities.length == 8 && maxSize > 40_320) ||
-                (cities.length == 9 && maxSize > 362_880)) {
+        if (!canBeUnique(numOfCities, maxSize)) {
             throw new IllegalStateException("Cannot force uniqueness when" +
-                    " the population size is greater than the factorial" +
-                    " of the total number of cities.");
+                    " the population size is greater than the number of" +
+                    " distinct tours through the cities.");
         }
 
-        HashSet<Chromosome> hashSet = new HashSet<>();
+        ChromosomeSet chromosomesAdded = new ChromosomeSet(maxSize);
+
+        int seeded = (int)Math.round(seededFraction * (maxSize - size));
+        if (seeded > 0) {
+            // The starting cities are picked here, so the tours do not depend
+            // on which thread builds them.
+            int[] starts = new int[seeded];
+            for (int i = 0; i < seeded; i++) {
+                starts[i] = random.nextInt(numOfCities);
+            }
+
+            boolean hasCoordinates = cities.getEdgeWeightType() != EdgeWeightType.EXPLICIT;
+            Chromosome[] seeds = new Chromosome[seeded];
+            Arrays.parallelSetAll(seeds, i -> {
+                if (i == 0) {
+                    return TourConstruction.greedyEdge(cities);
+                } else if (i == 1 && hasCoordinates) {
+                    return TourConstruction.spaceFillingCurve(cities);
+                } else {
+                    return TourConstruction.nearestNeighbor(cities, starts[i]);
+                }
+            });
+
+            for (Chromosome seed : seeds) {
+                if (chromosomesAdded.add(seed)) {
+                    add(seed);
+                }
+            }
+        }
 
-        while (chromosomes.size() < maxSize) {
+        while (size < maxSize) {
             Chromosome chromo = new Chromosome(cities, random);
-            if (!hashSet.contains(chromo)) {
-                hashSet.add(chromo);
+            if (chromosomesAdded.add(chromo)) {
                 add(chromo);
             }
         }
 
     }
 
+    /**
+     * Check whether there are enough distinct tours through some cities for
+     * a population of unique Chromosomes. Tours that are the same cycle are
+     * equal, so there are (n-1)!/2 distinct tours through n cities, which is
+     * 3 * 4 * ... * (n-1). Example: if there are 4 cities but the population
+     * size is 100, it is impossible to have all unique values since there are
+     * only 3 possibilities.
+     * @param numOfCities   the number of cities
+     * @param popSize       the size of the population
+     * @return              true if popSize distinct tours exist
+     */
+    public static boolean canBeUnique (int numOfCities, int popSize) {
+        long distinctTours = 1;
+        for (int i = 3; i < numOfCities && distinctTours < popSize; i++) {
+            distinctTours *= i;
+        }
+        return distinctTours >= popSize;
+    }
+
     /**
      * Removes all the Chromosomes.
      */
     public void clear () {
-        chromosomes.clear();
+        Arrays.fill(chromosomes, 0, size, null);
+        size = 0;
+        mostFit = null;
     }
 
     /**
@@ -83,7 +267,15 @@ public class Population implements Iterable<Chromosome> {
      * @return  the array of Cities
      */
     public City[] getCities () {
-        return chromosomes.peek().getArray().clone();
+        return getCityTable().getCities();
+    }
+
+    /**
+     * Get the table of cities that the Chromosomes are tours of.
+     * @return  the CityTable shared by the Chromosomes
+     */
+    public CityTable getCityTable () {
+        return chromosomes[0].getCityTable();
     }
 
     /**
@@ -91,14 +283,7 @@ public class Population implements Iterable<Chromosome> {
      * @return  the array of the Chromosomes
      */
     public Chromosome[] getChromosomes () {
-        Chromosome[] array = new Chromosome[chromosomes.size()];
-
-        int i = 0;
-        for (Chromosome chromo : chromosomes) {
-            array[i++] = chromo;
-        }
-
-        return array;
+        return Arrays.copyOf(chromosomes, size);
     }
 
     /**
@@ -106,7 +291,7 @@ public class Population implements Iterable<Chromosome> {
      * @return  the number of all the Chromosomes.
      */
     public int size () {
-        return chromosomes.size();
+        return size;
     }
 
     /**
@@ -115,17 +300,42 @@ public class Population implements Iterable<Chromosome> {
      */
     public int getAverageDistance () {
 
-        int averageDistance = 0;
+        long totalDistance = 0; // An int overflows on large instances.
 
-        for (Chromosome chromosome : chromosomes) {
-            averageDistance += chromosome.getDistance();
+        for (int i = 0; i < size; i++) {
+            totalDistance += chromosomes[i].getDistance();
         }
 
-        return averageDistance / chromosomes.size();
+        return (int)(totalDistance / size);
     }
 
     public static Population fromDataSet (int popSize, DataSet dataSet, Random r) {
-        City[] cities = IO.Import.getCities(dataSet);
+        return fromCityTable(popSize, IO.Import.getCityTable(dataSet), r);
+    }
+
+    /**
+     * Generate a Population of unique tours of a table of cities, a fraction
+     * of them built by heuristics (see populate) and the rest random.
+     * @param popSize           the size of the population
+     * @param cities            the cities
+     * @param r                 the Random object used for the starting cities and shuffling
+     * @param seededFraction    the fraction of the tours to build with heuristics, from 0 to 1
+     * @return                  the Population
+     */
+    public static Population fromCityTable (int popSize, CityTable cities, Random r, double seededFraction) {
+        Population population = new Population(popSize);
+        population.populate(cities, r, seededFraction);
+        return population;
+    }
+
+    /**
+     * Generate a Population of unique, randomly shuffled tours of a table of cities.
+     * @param popSize   the size of the population
+     * @param cities    the cities, for example read from a TSPLIB file by IO.Import
+     * @param r         the Random object used for shuffling
+     * @return          a randomly generated Population
+     */
+    public static Population fromCityTable (int popSize, CityTable cities, Random r) {
         Population population = new Population(popSize);
         population.populate(cities, r);
         return population;
@@ -139,11 +349,7 @@ public class Population implements Iterable<Chromosome> {
      * @return              a randomly generated Population
      */
     public static Population getRandomPopulation(int numOfCities, int sizeOfPop, Random random) {
-        City[] cities = new City[numOfCities];
-
-        for (int i = 0; i < numOfCities; i++) {
-            cities[i] = City.getRandomCity(random);
-        }
+        CityTable cities = CityTable.getRandomTable(numOfCities, random);
 
         Population population = new Population(sizeOfPop);
 
@@ -159,16 +365,41 @@ public class Population implements Iterable<Chromosome> {
      * @return  the most fit Chromosome
      */
     public Chromosome getMostFit () {
-        return chromosomes.peek();
+        if (mostFit == null && size > 0) {
+            mostFit = chromosomes[0];
+            for (int i = 1; i < size; i++) {
+                if (chromosomes[i].getDistance() < mostFit.getDistance()) {
+                    mostFit = chromosomes[i];
+                }
+            }
+        }
+        return mostFit;
     }
 
     public Iterator<Chromosome> iterator () {
-        return chromosomes.iterator();
+        return new Iterator<Chromosome>() {
+            private int index = 0;
+
+            @Override
+            public boolean hasNext () {
+                return index < size;
+            }
+
+            @Override
+            public Chromosome next () {
+                if (index >= size) {
+                    throw new NoSuchElementException();
+                }
+                return chromosomes[index++];
+            }
+        };
     }
 
     public Population deepCopy () {
         Population population = new Population(maxSize);
-        chromosomes.forEach((chromosome) -> population.add(chromosome));
+        System.arraycopy(chromosomes, 0, population.chromosomes, 0, size);
+        population.size = size;
+        population.mostFit = mostFit;
         return population;
     }
 
@@ -176,7 +407,7 @@ public class Population implements Iterable<Chromosome> {
     public String toString () {
         StringBuilder sb = new StringBuilder("Population:");
 
-        for (Chromosome chromosome : chromosomes) {
+        for (Chromosome chromosome : this) {
             sb.append("\n");
             sb.append(chromosome);
             sb.append(" Value: ");
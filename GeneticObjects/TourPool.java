@@ -0,0 +1,98 @@
+package GeneticObjects;
+
+/**
+ * Recycles the tour arrays of Chromosomes that are thrown away as soon as
+ * they are made, such as a child that was then mutated into another child,
+ * or a child that did not make it into the population. Breeding takes the
+ * arrays of its children from the pool, so once the pool has filled up it
+ * no longer allocates a new array for every tour.
+ * <br/>
+ * Each thread has its own pool, so taking and giving back arrays needs no
+ * locking. A pool only keeps arrays of one size, the size last asked for,
+ * and at most CAPACITY of them; any more are left to the garbage collector.
+ * <br/>
+ * Only give back the tour of a Chromosome that nothing else can reach, as
+ * its array is handed out again and overwritten. A Chromosome that was ever
+ * in a Population, or was handed to a caller, may still be referenced, so
+ * the members of a Population are never given back. IslandModel relies on
+ * this to put the same migrant in the populations of several islands.
+ */
+public class TourPool {
+
+    /**
+     * Class cannot be instantiated, as there would be no point, since all
+     * the methods are static.
+     */
+    private TourPool () {}
+
+    // The most arrays kept per thread.
+    private static final int CAPACITY = 64;
+
+    private static final ThreadLocal<Arrays> ARRAYS = ThreadLocal.withInitial(Arrays::new);
+
+    /**
+     * Get an array for a tour, from the pool if it has one. The contents of
+     * the array are left over from its last use.
+     * @param size  the number of cities in the tour
+     * @return      an array of that size
+     */
+    public static int[] take (int size) {
+        Arrays arrays = ARRAYS.get();
+        if (arrays.size == size && arrays.count > 0) {
+            int[] array = arrays.arrays[--arrays.count];
+            arrays.arrays[arrays.count] = null;
+            return array;
+        }
+        return new int[size];
+    }
+
+    /**
+     * Get a copy of the tour of a Chromosome in an array from the pool, the
+     * same as Chromosome.getTour.
+     * @param chromosome    the Chromosome
+     * @return              the indexes of the cities, in the order they are visited
+     */
+    public static int[] copyTour (Chromosome chromosome) {
+        int[] tour = chromosome.getTourArray();
+        int[] copy = take(tour.length);
+        System.arraycopy(tour, 0, copy, 0, tour.length);
+        return copy;
+    }
+
+    /**
+     * Give an array back to the pool of this thread. The array must not be
+     * used again by the caller.
+     * @param array     the array
+     */
+    public static void give (int[] array) {
+        Arrays arrays = ARRAYS.get();
+        if (arrays.size != array.length) {
+            // The tours are of another size now, so the old arrays are of no use.
+            java.util.Arrays.fill(arrays.arrays, 0, arrays.count, null);
+            arrays.count = 0;
+            arrays.size = array.length;
+        }
+        if (arrays.count < CAPACITY) {
+            arrays.arrays[arrays.count++] = array;
+        }
+    }
+
+    /**
+     * Give the tour of a Chromosome back to the pool of this thread. The
+     * Chromosome must not be used again, by the caller or anything else.
+     * @param chromosome    the Chromosome that is thrown away
+     */
+    public static void recycle (Chromosome chromosome) {
+        give(chromosome.getTourArray());
+    }
+
+    /**
+     * The arrays kept by one thread, all of the same size.
+     */
+    private static class Arrays {
+        private final int[][] arrays = new int[CAPACITY][];
+        private int count;
+        private int size = -1;
+    }
+
+}
@@ -0,0 +1,216 @@
+package IO;
+
+import GeneticObjects.CityTable;
+import GeneticObjects.EdgeWeightType;
+import GeneticObjects.NeighborLists;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A compact binary format for very large instances, that is written once
+ * (for example after reading a TSPLIB file with Import) and then read back
+ * at almost no cost: the file is memory-mapped, and the CityTable uses the
+ * mapped coordinates directly, without copying them onto the heap.
+ * <br/>
+ * All values are little-endian. The file holds:
+ * <ul>
+ *     <li>a 24 byte header: the magic number "TSPB", the format version, the
+ *     EdgeWeightType (0 for EUCLIDEAN, 1 EUC_2D, 2 CEIL_2D, 3 ATT, 4 GEO),
+ *     the number of cities n, the number of neighbors k per city (0 if there
+ *     are no neighbor lists), and 4 bytes of padding,</li>
+ *     <li>the n x coordinates, as doubles,</li>
+ *     <li>the n y coordinates, as doubles,</li>
+ *     <li>the k nearest neighbors of each city, closest first, as n * k ints.</li>
+ * </ul>
+ * City names are not stored, the cities are named 1 to n. Instances with
+ * EXPLICIT distances can not be stored.
+ */
+public class BinaryInstance {
+
+    private static final int MAGIC = 0x42505354; // "TSPB" in little-endian order.
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 24;
+
+    // The EdgeWeightType of each code stored in the header. The codes are
+    // part of the format, so they must not change when EdgeWeightType does:
+    // a new type gets the next code, and no code is ever reused.
+    private static final EdgeWeightType[] TYPES_BY_CODE = {
+            EdgeWeightType.EUCLIDEAN,   // 0
+            EdgeWeightType.EUC_2D,      // 1
+            EdgeWeightType.CEIL_2D,     // 2
+            EdgeWeightType.ATT,         // 3
+            EdgeWeightType.GEO          // 4
+    };
+
+    /**
+     * Class cannot be instantiated, as there would be no point, since all
+     * the methods are static.
+     */
+    private BinaryInstance () {}
+
+    /**
+     * Write a table of cities to a file, with or without its neighbor lists.
+     * @param table     the cities to write
+     * @param k         the number of nearest neighbors stored per city, 0 for none
+     * @param file      the file to write, it is replaced if it exists
+     * @throws IOException  if the file can not be written
+     */
+    public static void write (CityTable table, int k, File file) throws IOException {
+        if (table == null || file == null) {
+            throw new IllegalArgumentException("Parameter cannot be null.");
+        }
+        if (table.getEdgeWeightType() == EdgeWeightType.EXPLICIT) {
+            throw new IllegalArgumentException("Explicit distances can not be stored.");
+        }
+        if (k < 0) {
+            throw new IllegalArgumentException("Parameter cannot be negative.");
+        }
+
+        int n = table.size();
+        NeighborLists lists = (k > 0 && n > 1) ? table.getNeighborLists(k) : null;
+        k = (lists == null) ? 0 : Math.min(k, lists.getK());
+
+        long coordinatesSize = 8L * n;
+        long neighborsSize = 4L * n * k;
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+
+            ByteBuffer header = map(channel, FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            header.putInt(MAGIC);
+            header.putInt(VERSION);
+            header.putInt(codeOf(table.getEdgeWeightType()));
+            header.putInt(n);
+            header.putInt(k);
+
+            long offset = HEADER_SIZE;
+            ByteBuffer xs = map(channel, FileChannel.MapMode.READ_WRITE, offset, coordinatesSize);
+            ByteBuffer ys = map(channel, FileChannel.MapMode.READ_WRITE, offset + coordinatesSize, coordinatesSize);
+            for (int i = 0; i < n; i++) {
+                xs.putDouble(table.getX(i));
+                ys.putDouble(table.getY(i));
+            }
+
+            if (k > 0) {
+                offset += 2 * coordinatesSize;
+                ByteBuffer neighbors = map(channel, FileChannel.MapMode.READ_WRITE, offset, neighborsSize);
+                for (int city = 0; city < n; city++) {
+                    for (int i = 0; i < k; i++) {
+                        neighbors.putInt(lists.get(city, i));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Map an instance file into memory. Nothing but the header and the
+     * neighbor lists is read until the coordinates are used. The neighbor
+     * lists are checked once here, so that a damaged file can not make the
+     * operators index outside the table later.
+     * @param file  the file to read
+     * @return      a CityTable backed by the mapped file, with the neighbor
+     *              lists of the file if it has any
+     * @throws IOException  if the file can not be read
+     */
+    public static CityTable read (File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+
+            if (channel.size() < HEADER_SIZE) {
+                throw new IllegalArgumentException("The file is too short to be a binary instance.");
+            }
+
+            ByteBuffer header = map(channel, FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (header.getInt() != MAGIC) {
+                throw new IllegalArgumentException("The file is not a binary instance.");
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported version " + version + ".");
+            }
+            int type = header.getInt();
+            int n = header.getInt();
+            int k = header.getInt();
+
+            if (type < 0 || type >= TYPES_BY_CODE.length) {
+                throw new IllegalArgumentException("Unsupported edge weight type " + type + ".");
+            }
+
+            long coordinatesSize = 8L * n;
+            long neighborsSize = 4L * n * k;
+            if (n < 1 || k < 0 || channel.size() < HEADER_SIZE + 2 * coordinatesSize + neighborsSize) {
+                throw new IllegalArgumentException("The file is truncated.");
+            }
+
+            // The mappings stay valid after the channel is closed.
+            long offset = HEADER_SIZE;
+            CityTable table = new CityTable(null,
+                    map(channel, FileChannel.MapMode.READ_ONLY, offset, coordinatesSize).asDoubleBuffer(),
+                    map(channel, FileChannel.MapMode.READ_ONLY, offset + coordinatesSize, coordinatesSize).asDoubleBuffer(),
+                    TYPES_BY_CODE[type], null);
+
+            if (k > 0) {
+                offset += 2 * coordinatesSize;
+                IntBuffer neighbors = map(channel, FileChannel.MapMode.READ_ONLY, offset, neighborsSize).asIntBuffer();
+                for (int i = 0; i < neighbors.limit(); i++) {
+                    int neighbor = neighbors.get(i);
+                    if (neighbor < 0 || neighbor >= n) {
+                        throw new IllegalArgumentException("Neighbor " + neighbor + " of city " + (i / k) +
+                                " is not one of the " + n + " cities.");
+                    }
+                }
+                table = table.withNeighborLists(new NeighborLists(k, neighbors));
+            }
+
+            return table;
+        }
+    }
+
+    /**
+     * Get the code stored in the header for an EdgeWeightType.
+     * @param type  the EdgeWeightType
+     * @return      the code of the type
+     */
+    private static int codeOf (EdgeWeightType type) {
+        for (int code = 0; code < TYPES_BY_CODE.length; code++) {
+            if (TYPES_BY_CODE[code] == type) {
+                return code;
+            }
+        }
+        throw new IllegalArgumentException("Edge weight type " + type + " can not be stored.");
+    }
+
+    /**
+     * Check whether a file starts like a binary instance.
+     * @param file  the file to check
+     * @return      true if the file starts with the magic number of the format
+     * @throws IOException  if the file can not be read
+     */
+    public static boolean isBinaryInstance (File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            return raf.length() >= 4 && Integer.reverseBytes(raf.readInt()) == MAGIC;
+        }
+    }
+
+    /**
+     * Map a region of a file, which must be smaller than 2 GB.
+     */
+    private static MappedByteBuffer map (FileChannel channel, FileChannel.MapMode mode,
+                                         long offset, long size) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("The instance is too large to be mapped.");
+        }
+        MappedByteBuffer buffer = channel.map(mode, offset, size);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+
+}
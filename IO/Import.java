@@ -1,11 +1,21 @@
 package IO;
 
 import GeneticObjects.City;
+import GeneticObjects.CityTable;
+import GeneticObjects.DistanceMatrix;
+import GeneticObjects.EdgeWeightType;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 
 /**
- * Helper class for reading the provided data sets and converting it to an array of City objects.
+ * Reads problem instances in the TSPLIB format and converts them to a CityTable.
+ * <br/>
+ * The file is streamed one line at a time, so it is never held in memory as
+ * a whole. The header is read up to the first section, and then the
+ * NODE_COORD_SECTION, DISPLAY_DATA_SECTION and EDGE_WEIGHT_SECTION are
+ * parsed; any other section is skipped. Supported edge weight types are
+ * EUC_2D, CEIL_2D, ATT, GEO and EXPLICIT (in any of the TSPLIB matrix formats).
  */
 public class Import {
 
@@ -15,66 +25,324 @@ public class Import {
      * @return          the City objects contained within the data set
      */
     public static City[] getCities (DataSet dataSet) {
+        return getCityTable(dataSet).getCities();
+    }
 
-        String dataSetName;
-        int startingLine;
-
-        // Determine which data set to load up and set the properties pertaining to it.
-        if (dataSet == DataSet.bays29) {
-            dataSetName = "bays29.tsp";
-            startingLine = 38;
-        } else {
-            dataSetName = "att48.tsp";
-            startingLine = 6;
+    /**
+     * Read one of the provided data sets.
+     * @param dataSet   the data set to read
+     * @return          the CityTable of the data set
+     */
+    public static CityTable getCityTable (DataSet dataSet) {
+        String dataSetName = (dataSet == DataSet.bays29) ? "bays29.tsp" : "att48.tsp";
+        try (InputStream stream = Import.class.getResourceAsStream(dataSetName)) {
+            return read(stream);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
         }
+    }
 
-        String[] lines = read(dataSetName).split("\n");
-        String[] words = lines[3].split(" ");
-        int numOfCities = Integer.parseInt(words[words.length-1]);
-        City[] cities = new City[numOfCities];
-
-        // Read each line and turn it into a City.
-        for (int i = startingLine; i < startingLine+numOfCities; i++) {
-            String[] line = removeWhiteSpace(lines[i]).trim().split(" ");
-            int x = (int)Double.parseDouble(line[1].trim());
-            int y = (int)Double.parseDouble(line[2].trim());
-            City city = new City(line[0], x, y);
-            cities[i-startingLine] = city;
+    /**
+     * Read a TSPLIB file from the disk. Files written by BinaryInstance are
+     * recognized and memory-mapped instead of parsed.
+     * @param file  the .tsp (or binary) file to read
+     * @return      the CityTable of the instance in the file
+     * @throws IOException  if the file can not be read
+     */
+    public static CityTable read (File file) throws IOException {
+        if (BinaryInstance.isBinaryInstance(file)) {
+            return BinaryInstance.read(file);
         }
+        try (InputStream stream = new FileInputStream(file)) {
+            return read(stream);
+        }
+    }
 
-        return cities;
+    /**
+     * Read an instance in the TSPLIB format from a stream. The stream is not closed.
+     * @param stream    the stream to read
+     * @return          the CityTable of the instance
+     * @throws IOException  if the stream can not be read
+     */
+    public static CityTable read (InputStream stream) throws IOException {
+        Reader reader = new InputStreamReader(stream, StandardCharsets.US_ASCII);
+        return new Parser(new BufferedReader(reader, 1 << 16)).parse();
     }
 
     /**
-     * Removes duplicate what spaces in a String.
-     * Example: "   2  3  3,2   " becomes " 2 3 3,2 "
-     * @param s     the String to parse
-     * @return      the String minus the duplicate white spaces
+     * Parses a single TSPLIB file.
      */
-    private static String removeWhiteSpace (String s) {
-        for (int i = 1; i < s.length(); i++) {
-            if (s.charAt(i) == ' ' && s.charAt(i-1) == ' ') {
-                if (i != s.length()) {
-                    s = s.substring(0, i) + s.substring(i+1, s.length());
-                    i--;
-                } else {
-                    s = s.substring(0, i);
-                    i--;
+    private static class Parser {
+
+        private BufferedReader reader;
+        private String line;        // The line being read, null at the end of the file.
+        private int lineNumber;
+        private int index;          // The position in the line.
+
+        private int dimension = -1;
+        private String type = "TSP";
+        private String edgeWeightType;
+        private String edgeWeightFormat = "FULL_MATRIX";
+        private double[] xs, ys;
+        private double[] displayXs, displayYs;
+        private float[] matrix;
+
+        Parser (BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        CityTable parse () throws IOException {
+
+            nextLine();
+
+            while (line != null) {
+
+                String trimmed = line.trim();
+                int colon = trimmed.indexOf(':');
+                String keyword = (colon == -1) ? trimmed : trimmed.substring(0, colon).trim();
+                String value = (colon == -1) ? "" : trimmed.substring(colon + 1).trim();
+                nextLine();
+
+                switch (keyword) {
+                    case "": break;
+                    case "EOF": line = null; break;
+                    case "TYPE": type = value; break;
+                    case "DIMENSION": dimension = Integer.parseInt(value); break;
+                    case "EDGE_WEIGHT_TYPE": edgeWeightType = value; break;
+                    case "EDGE_WEIGHT_FORMAT": edgeWeightFormat = value; break;
+                    case "NODE_COORD_TYPE":
+                        if (!value.equals("TWOD_COORDS")) {
+                            throw error("Unsupported NODE_COORD_TYPE " + value);
+                        }
+                        break;
+                    case "NODE_COORD_SECTION":
+                        xs = new double[checkDimension()];
+                        ys = new double[dimension];
+                        readCoordinates(xs, ys);
+                        break;
+                    case "DISPLAY_DATA_SECTION":
+                        displayXs = new double[checkDimension()];
+                        displayYs = new double[dimension];
+                        readCoordinates(displayXs, displayYs);
+                        break;
+                    case "EDGE_WEIGHT_SECTION":
+                        checkDimension();
+                        readEdgeWeights();
+                        break;
+                    default:
+                        if (keyword.endsWith("_SECTION")) {
+                            skipSection();
+                        }
+                        // Any other header (NAME, COMMENT, ...) is not needed.
+                }
+
+                // Move past the last line of a section that was just read.
+                if (line != null && index > 0) {
+                    nextLine();
                 }
             }
+
+            return createTable();
         }
-        return s;
-    }
 
-    /**
-     * Read from a file and load it to a String.
-     * @param fileName  the name of the file to read (within the same root as this class)
-     * @return          a String with the contents of the file
-     */
-    private static String read (String fileName) {
-        InputStream stream = Import.class.getResourceAsStream(fileName);
-        java.util.Scanner s = new java.util.Scanner(stream).useDelimiter("\\A");
-        return s.hasNext() ? s.next() : "";
+        private CityTable createTable () {
+
+            if (!type.equals("TSP")) {
+                throw new IllegalArgumentException("Only symmetric TSP instances are supported, not " + type + ".");
+            }
+            if (edgeWeightType == null) {
+                throw new IllegalArgumentException("The file has no EDGE_WEIGHT_TYPE.");
+            }
+
+            // Prefer the display coordinates when drawing, if there are any.
+            double[] drawXs = (displayXs != null) ? displayXs : xs;
+            double[] drawYs = (displayYs != null) ? displayYs : ys;
+
+            if (edgeWeightType.equals("EXPLICIT")) {
+                if (matrix == null) {
+                    throw new IllegalArgumentException("The file has no EDGE_WEIGHT_SECTION.");
+                }
+                if (drawXs == null) {
+                    drawXs = new double[dimension];
+                    drawYs = new double[dimension];
+                }
+                return new CityTable(null, drawXs, drawYs, EdgeWeightType.EXPLICIT,
+                        new DistanceMatrix(dimension, matrix));
+            }
+
+            EdgeWeightType weightType;
+            switch (edgeWeightType) {
+                case "EUC_2D": weightType = EdgeWeightType.EUC_2D; break;
+                case "CEIL_2D": weightType = EdgeWeightType.CEIL_2D; break;
+                case "ATT": weightType = EdgeWeightType.ATT; break;
+                case "GEO": weightType = EdgeWeightType.GEO; break;
+                default:
+                    throw new IllegalArgumentException("Unsupported EDGE_WEIGHT_TYPE " + edgeWeightType + ".");
+            }
+
+            if (xs == null) {
+                throw new IllegalArgumentException("The file has no NODE_COORD_SECTION.");
+            }
+
+            return new CityTable(null, xs, ys, weightType, null);
+        }
+
+        /**
+         * Reads the "id x y" lines of a coordinate section. The ids go from 1
+         * to the dimension, in any order.
+         */
+        private void readCoordinates (double[] x, double[] y) throws IOException {
+            for (int i = 0; i < dimension; i++) {
+                int id = (int)nextNumber();
+                if (id < 1 || id > dimension) {
+                    throw error("Node id " + id + " is out of range");
+                }
+                x[id - 1] = nextNumber();
+                y[id - 1] = nextNumber();
+            }
+        }
+
+        /**
+         * Reads the weights of an EDGE_WEIGHT_SECTION into a full symmetric
+         * matrix, in the order given by the EDGE_WEIGHT_FORMAT. A column-wise
+         * format lists the weights in the same order as the row-wise format
+         * of the opposite triangle.
+         */
+        private void readEdgeWeights () throws IOException {
+            int n = dimension;
+            matrix = new float[n * n];
+
+            switch (edgeWeightFormat) {
+                case "FULL_MATRIX":
+                    for (int i = 0; i < n; i++) {
+                        for (int j = 0; j < n; j++) {
+                            matrix[i * n + j] = (float)nextNumber();
+                        }
+                    }
+                    return;
+                case "UPPER_ROW":
+                case "LOWER_COL":
+                    for (int i = 0; i < n; i++) {
+                        for (int j = i + 1; j < n; j++) {
+                            setWeight(i, j, nextNumber());
+                        }
+                    }
+                    return;
+                case "LOWER_ROW":
+                case "UPPER_COL":
+                    for (int i = 0; i < n; i++) {
+                        for (int j = 0; j < i; j++) {
+                            setWeight(i, j, nextNumber());
+                        }
+                    }
+                    return;
+                case "UPPER_DIAG_ROW":
+                case "LOWER_DIAG_COL":
+                    for (int i = 0; i < n; i++) {
+                        for (int j = i; j < n; j++) {
+                            setWeight(i, j, nextNumber());
+                        }
+                    }
+                    return;
+                case "LOWER_DIAG_ROW":
+                case "UPPER_DIAG_COL":
+                    for (int i = 0; i < n; i++) {
+                        for (int j = 0; j <= i; j++) {
+                            setWeight(i, j, nextNumber());
+                        }
+                    }
+                    return;
+                default:
+                    throw error("Unsupported EDGE_WEIGHT_FORMAT " + edgeWeightFormat);
+            }
+        }
+
+        private void setWeight (int i, int j, double weight) {
+            matrix[i * dimension + j] = (float)weight;
+            matrix[j * dimension + i] = (float)weight;
+        }
+
+        /**
+         * Skips the lines of a section that is not needed, up to the next
+         * line that starts with a keyword.
+         */
+        private void skipSection () throws IOException {
+            while (line != null) {
+                String trimmed = line.trim();
+                if (!trimmed.isEmpty() && Character.isLetter(trimmed.charAt(0))) {
+                    return;
+                }
+                nextLine();
+            }
+        }
+
+        /**
+         * Reads the next number, moving on to the next lines if needed.
+         */
+        private double nextNumber () throws IOException {
+            while (line != null) {
+                int length = line.length();
+                while (index < length && line.charAt(index) <= ' ') {
+                    index++;
+                }
+                if (index < length) {
+                    int start = index;
+                    while (index < length && line.charAt(index) > ' ') {
+                        index++;
+                    }
+                    return parseNumber(start, index);
+                }
+                nextLine();
+            }
+            throw error("Unexpected end of file");
+        }
+
+        /**
+         * Parses the number between two positions of the current line. Plain
+         * integers, which most files consist of, are parsed without creating
+         * a String.
+         */
+        private double parseNumber (int start, int end) {
+            boolean negative = line.charAt(start) == '-';
+            int i = negative ? start + 1 : start;
+            long value = 0;
+
+            while (i < end && i - start < 18) {
+                char c = line.charAt(i);
+                if (c < '0' || c > '9') {
+                    break;
+                }
+                value = value * 10 + (c - '0');
+                i++;
+            }
+
+            if (i == end && i > (negative ? start + 1 : start)) {
+                return negative ? -value : value;
+            }
+
+            try {
+                return Double.parseDouble(line.substring(start, end));
+            } catch (NumberFormatException ex) {
+                throw error("Invalid number " + line.substring(start, end));
+            }
+        }
+
+        private void nextLine () throws IOException {
+            line = reader.readLine();
+            lineNumber++;
+            index = 0;
+        }
+
+        private int checkDimension () {
+            if (dimension < 1) {
+                throw error("Section found before the DIMENSION");
+            }
+            return dimension;
+        }
+
+        private IllegalArgumentException error (String message) {
+            return new IllegalArgumentException(message + " (line " + lineNumber + ").");
+        }
     }
 
     public enum DataSet {
@@ -3,7 +3,13 @@ package Utility;
 import GeneticAlgorithms.GeneticAlgorithm;
 import GeneticAlgorithms.Preset;
 
+import java.util.Random;
 import java.util.Scanner;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
 
 public class HeatMap {
     private int maxValue = 0;
@@ -19,6 +25,14 @@ public class HeatMap {
     private double mStart, mFinish, mIncrement;
     private int numberOfRuns;
     private int scale;
+    private int threads;        // Runs done at the same time.
+    private long seed;          // The seed of every run is derived from this.
+
+    // Progress is printed at most this often, in nanoseconds.
+    private static final long PROGRESS_INTERVAL = 10_000_000_000L;
+
+    // Spreads the seeds of the runs apart, as in SplittableRandom.
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
 
     private HeatMap () {
         numberOfRuns = 10;
@@ -29,6 +43,8 @@ public class HeatMap {
         this.geneticAlgorithm = geneticAlgorithm;
         numberOfRuns = 10;
         scale = 10;
+        threads = Runtime.getRuntime().availableProcessors();
+        seed = new Random().nextLong();
         crossoverRangeSet = false;
         mutationRangeSet = false;
     }
@@ -100,48 +116,14 @@ public class HeatMap {
         System.out.println(" (" + (int)(cStart*100) + "% to " + (int)(cFinish*100) + "% by " + (int)(cIncrement*100) + "%)");
         System.out.print("Testing Mutation rate from " + mStart + " to " + mFinish + " by " + mIncrement);
         System.out.println(" (" + (int)(mStart*100) + "% to " + (int)(mFinish*100) + "% by " + (int)(mIncrement*100) + "%)");
+        System.out.println("Seed: " + seed + ", Threads: " + threads);
 
-        estimateTime();
         System.out.println("Running...");
 
         array = new int[rows][columns];
         loadGeneticAlgorithmResults();
     }
 
-    private void estimateTime () {
-
-        System.out.println("Estimating time...");
-
-        int num = 100;
-
-        long before = System.nanoTime();
-
-        java.util.Random random = new java.util.Random();
-        double c, m;
-
-        for (int i = 0; i < num; i++) {
-            c = (random.nextInt((int)((cFinish-cStart) * 1000.0)) + cStart*1000.0)/1000.0;
-            m = (random.nextInt((int)((mFinish-mStart) * 1000.0)) + mStart*1000.0)/1000.0;
-            geneticAlgorithm.reset();
-            geneticAlgorithm.setCrossoverRate(c);
-            geneticAlgorithm.setMutationRate(m);
-            geneticAlgorithm.run();
-        }
-
-        double now = ((System.nanoTime() - before) / 1_000_000_000.0)/(double)num;
-
-        int estimatedTime = (int)(now * (rows * columns * numberOfRuns));
-
-        if (estimatedTime > 3600) {
-            System.out.println("Estimated time: " + (estimatedTime/3600) + " hour(s).");
-        } else if (estimatedTime > 60) {
-            System.out.println("Estimated time: " + (estimatedTime/60) + " minute(s).");
-        } else {
-            System.out.println("Estimated time: " + estimatedTime + " second(s).");
-        }
-
-    }
-
     private void loadGeneticAlgorithmResults () {
 
         long before = System.nanoTime();
@@ -149,32 +131,62 @@ public class HeatMap {
         long now = System.nanoTime();
         long delta = (now - before) / 1_000_000_000L;
 
-        if (delta > 3600) {
-            System.out.println("Time Elapsed: " + (delta/3600) + " hour(s).");
-        } else if (delta > 60) {
-            System.out.println("Time Elapsed: " + (delta/60) + " minute(s).");
-        } else {
-            System.out.println("Time Elapsed: " + delta + " second(s).");
-        }
-
+        System.out.println("Time Elapsed: " + formatTime(delta) + ".");
     }
 
+    /**
+     * Runs every run of every cell as a task of its own on a work-stealing
+     * pool. Each task runs a copy of the GeneticAlgorithm with a seed of its
+     * own, so the results do not depend on the order the tasks are run in or
+     * on the number of threads. The results are added up on this thread as
+     * the tasks complete, which is also where the progress is printed from.
+     */
     private void doLoadGeneticAlgorithmResults () {
 
-        for (int y = 0; y < array.length; y++) {
-            for (int x = 0; x < array[0].length; x++) {
-
-                int avgResult = 0;
-                for (int i = 0; i < numberOfRuns; i++) {
-                    geneticAlgorithm.reset();
-                    geneticAlgorithm.setCrossoverRate(cStart + (x*cIncrement));
-                    geneticAlgorithm.setMutationRate(mStart + (y*mIncrement));
-                    geneticAlgorithm.run();
-                    int result = geneticAlgorithm.getAreaUnderBestDistances();
-                    avgResult += result;
+        int total = rows * columns * numberOfRuns;
+        long[][] sums = new long[rows][columns];
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        CompletionService<CellResult> completionService = new ExecutorCompletionService<>(pool);
+
+        try {
+            for (int y = 0; y < rows; y++) {
+                for (int x = 0; x < columns; x++) {
+                    for (int i = 0; i < numberOfRuns; i++) {
+                        int row = y, column = x, task = (y * columns + x) * numberOfRuns + i;
+                        completionService.submit(() -> runCell(row, column, task));
+                    }
+                }
+            }
+
+            long start = System.nanoTime();
+            long lastReport = start;
+
+            for (int completed = 1; completed <= total; completed++) {
+                CellResult result = completionService.take().get();
+                sums[result.row][result.column] += result.value;
+
+                long now = System.nanoTime();
+                if (now - lastReport >= PROGRESS_INTERVAL || completed == total) {
+                    long remaining = (long)((now - start) / (double)completed * (total - completed)) / 1_000_000_000L;
+                    System.out.println("Completed " + completed + " of " + total + " runs ("
+                            + (completed * 100 / total) + "%), about " + formatTime(remaining) + " left.");
+                    lastReport = now;
                 }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while running the heat map.", ex);
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException("A run of the heat map failed.", ex.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
 
-                avgResult = avgResult / numberOfRuns;
+        for (int y = 0; y < rows; y++) {
+            for (int x = 0; x < columns; x++) {
+
+                int avgResult = (int)(sums[y][x] / numberOfRuns);
 
                 if (avgResult > maxValue) {
                     maxValue = avgResult;
@@ -189,6 +201,48 @@ public class HeatMap {
         System.out.println("Completed.");
     }
 
+    /**
+     * Does a single run of a cell on a copy of the GeneticAlgorithm.
+     * @param row       the row of the cell, for the mutation rate
+     * @param column    the column of the cell, for the crossover rate
+     * @param task      the number of the run among all runs, for the seed
+     * @return          the area under the best distances of the run
+     */
+    private CellResult runCell (int row, int column, int task) {
+        GeneticAlgorithm copy = geneticAlgorithm.copy();
+        copy.setThreads(1);
+        copy.setRandom(new Random(new SplittableRandom(seed + task * GOLDEN_GAMMA).nextLong()));
+        copy.setCrossoverRate(cStart + (column*cIncrement));
+        copy.setMutationRate(mStart + (row*mIncrement));
+        copy.run();
+        return new CellResult(row, column, copy.getAreaUnderBestDistances());
+    }
+
+    private static String formatTime (long seconds) {
+        if (seconds > 3600) {
+            return (seconds/3600) + " hour(s)";
+        } else if (seconds > 60) {
+            return (seconds/60) + " minute(s)";
+        } else {
+            return seconds + " second(s)";
+        }
+    }
+
+    /**
+     * The result of one run of a cell.
+     */
+    private static class CellResult {
+        private final int row;
+        private final int column;
+        private final long value;
+
+        CellResult (int row, int column, long value) {
+            this.row = row;
+            this.column = column;
+            this.value = value;
+        }
+    }
+
     private String getBest () {
         StringBuilder sb = new StringBuilder();
         sb.append("Best Value(s) found at:");
@@ -0,0 +1,37 @@
+package GeneticAlgorithms;
+
+import GeneticObjects.Chromosome;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Setup;
+
+/**
+ * Measures the evaluation of a tour and the hash code used to find
+ * duplicate tours.
+ */
+public class ChromosomeBenchmark extends InstanceBenchmark {
+
+    private int[] tour;
+
+    @Setup(Level.Trial)
+    public void setUpTour () {
+        tour = p1.getTour();
+    }
+
+    /**
+     * A new Chromosome every time, so that the length is not already known.
+     */
+    @Benchmark
+    public int getDistance () {
+        return new Chromosome(table, tour).getDistance();
+    }
+
+    /**
+     * A new Chromosome every time, so that the fingerprint is not already known.
+     */
+    @Benchmark
+    public int hashCodeOfChromosome () {
+        return new Chromosome(table, tour).hashCode();
+    }
+
+}
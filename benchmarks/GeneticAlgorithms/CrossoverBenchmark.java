@@ -0,0 +1,30 @@
+package GeneticAlgorithms;
+
+import GeneticObjects.Chromosome;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+import java.util.ArrayList;
+
+/**
+ * Measures breeding two children from the same two parents with each type
+ * of crossover.
+ */
+public class CrossoverBenchmark extends InstanceBenchmark {
+
+    @Param
+    public GeneticAlgorithm.CrossoverType crossoverType;
+
+    @Setup(Level.Trial)
+    public void setUpCrossover () {
+        geneticAlgorithm.setCrossoverType(crossoverType);
+    }
+
+    @Benchmark
+    public ArrayList<Chromosome> crossover () {
+        return geneticAlgorithm.crossover(p1, p2, random);
+    }
+
+}
@@ -0,0 +1,17 @@
+package GeneticAlgorithms;
+
+import GeneticObjects.Population;
+import org.openjdk.jmh.annotations.Benchmark;
+
+/**
+ * Measures breeding a whole generation from the same population, with the
+ * default settings of the GeneticAlgorithm.
+ */
+public class GenerationBenchmark extends InstanceBenchmark {
+
+    @Benchmark
+    public Population createNextGeneration () {
+        return geneticAlgorithm.createNextGeneration();
+    }
+
+}
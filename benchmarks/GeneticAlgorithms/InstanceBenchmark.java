@@ -0,0 +1,102 @@
+package GeneticAlgorithms;
+
+import GeneticObjects.Chromosome;
+import GeneticObjects.CityTable;
+import GeneticObjects.EdgeWeightType;
+import GeneticObjects.Population;
+import IO.Import;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The instances that every benchmark is run on, and the population, parents
+ * and GeneticAlgorithm built from them. Every benchmark is run on att48,
+ * bays29 and on random instances of 1k, 10k and 100k cities, and reports
+ * its throughput. Run with -prof gc for the allocation rate as well:
+ * <br/>
+ * mvn -Pjmh package <br/>
+ * java -jar target/benchmarks.jar -prof gc
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public abstract class InstanceBenchmark {
+
+    private static final int POPULATION_SIZE = 100;
+    private static final long SEED = 42;
+
+    @Param({"att48", "bays29", "random1k", "random10k", "random100k"})
+    public String instance;
+
+    CityTable table;
+    Population population;
+    Chromosome p1, p2;
+    GeneticAlgorithm geneticAlgorithm;
+    Random random;
+
+    @Setup(Level.Trial)
+    public void setUpInstance () {
+        table = getTable(instance);
+        population = Population.fromCityTable(POPULATION_SIZE, table, new Random(SEED));
+        p1 = population.get(0);
+        p2 = population.get(1);
+        random = new Random(SEED);
+
+        geneticAlgorithm = new GeneticAlgorithm();
+        geneticAlgorithm.setPopulation(population);
+        geneticAlgorithm.setRandom(new Random(SEED));
+    }
+
+    /**
+     * Get an instance by the name used in the instance parameter.
+     * @param name  att48, bays29, random1k, random10k or random100k
+     * @return      the cities of the instance
+     */
+    private static CityTable getTable (String name) {
+        if (name.equals("att48")) {
+            return Import.getCityTable(Import.DataSet.att48);
+        } else if (name.equals("bays29")) {
+            return Import.getCityTable(Import.DataSet.bays29);
+        } else if (name.equals("random1k")) {
+            return getRandomTable(1_000);
+        } else if (name.equals("random10k")) {
+            return getRandomTable(10_000);
+        } else if (name.equals("random100k")) {
+            return getRandomTable(100_000);
+        }
+        throw new IllegalArgumentException("Unknown instance " + name + ".");
+    }
+
+    /**
+     * Create an instance with cities spread uniformly over a large square,
+     * measured like a TSPLIB EUC_2D instance.
+     * @param size  the number of cities
+     * @return      the random instance
+     */
+    private static CityTable getRandomTable (int size) {
+        Random random = new Random(SEED);
+        double[] xs = new double[size];
+        double[] ys = new double[size];
+        for (int i = 0; i < size; i++) {
+            xs[i] = random.nextInt(1_000_000);
+            ys[i] = random.nextInt(1_000_000);
+        }
+        return new CityTable(null, xs, ys, EdgeWeightType.EUC_2D, null);
+    }
+
+}
@@ -0,0 +1,27 @@
+package GeneticAlgorithms;
+
+import GeneticObjects.Chromosome;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+/**
+ * Measures mutating the same Chromosome with each type of mutation.
+ */
+public class MutationBenchmark extends InstanceBenchmark {
+
+    @Param
+    public GeneticAlgorithm.MutationType mutationType;
+
+    @Setup(Level.Trial)
+    public void setUpMutation () {
+        geneticAlgorithm.setMutationType(mutationType);
+    }
+
+    @Benchmark
+    public Chromosome mutate () {
+        return geneticAlgorithm.mutate(p1, random);
+    }
+
+}
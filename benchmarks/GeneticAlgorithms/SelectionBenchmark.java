@@ -0,0 +1,29 @@
+package GeneticAlgorithms;
+
+import GeneticObjects.Chromosome;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+/**
+ * Measures picking a parent with each type of selection. The samplers of the
+ * types that need one are built once, as they are once per generation.
+ */
+public class SelectionBenchmark extends InstanceBenchmark {
+
+    @Param
+    public GeneticAlgorithm.SelectionType selectionType;
+
+    @Setup(Level.Trial)
+    public void setUpSelection () {
+        geneticAlgorithm.setSelectionType(selectionType);
+        geneticAlgorithm.prepareSelection(random);
+    }
+
+    @Benchmark
+    public Chromosome select () {
+        return geneticAlgorithm.select(random, 0);
+    }
+
+}